@@ -1,15 +1,55 @@
 package com.ag777.util.lang.convert;
 
-import com.ag777.util.lang.StringUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
 
 /**
  * 有关 进制转换 工具类
+ * <p>
+ * [修改]16进制和Base64改为查表实现,编码可以写到调用方提供的char[]/byte[]/ByteBuffer中,
+ * 解码一次遍历同时校验;另提供流式版本处理大文件
+ * </p>
  * 
  * @author ag777
- * @version create on 2018年11月23日,last modify at 2018年12月05日
+ * @version create on 2018年11月23日,last modify at 2026年10月18日
  */
 public class BHDConvertUtils {
 
+	/* 流式处理时每次读取的字节数 */
+	private static final int STREAM_BUFFER_SIZE = 8192;
+	private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+	private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+	private static final char[] BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	/* ASCII字符对应的值,-1为非法字符 */
+	private static final int[] HEX_VALUES = new int[128];
+	private static final int[] BASE64_VALUES = new int[128];
+	
+	static {
+		Arrays.fill(HEX_VALUES, -1);
+		for(int i=0; i<16; i++) {
+			HEX_VALUES[HEX_UPPER[i]] = i;
+			HEX_VALUES[HEX_LOWER[i]] = i;
+		}
+		Arrays.fill(BASE64_VALUES, -1);
+		for(int i=0; i<BASE64_CHARS.length; i++) {
+			BASE64_VALUES[BASE64_CHARS[i]] = i;
+		}
+	}
+
 	private BHDConvertUtils() {}
 	
 	/**
@@ -27,8 +67,9 @@ public class BHDConvertUtils {
 	/**
 	 * 16进制转byte数组
 	 * <p>
-	 * 会全部转化为大写再进行计算<br>
+	 * 不区分大小写<br>
 	 * 如果传入参数不为偶数，则会丢失最后一个字符
+	 * [修改]改为查表,一次遍历同时校验
 	 * </p>
 	 * 
 	 * @param hexStr 十六进制字符串
@@ -39,36 +80,501 @@ public class BHDConvertUtils {
 	    if (hexStr == null) {
 	        return null;   
 	    }   
-	    hexStr = hexStr.toUpperCase();   
-	    int length = hexStr.length() / 2;	//向下取整主动丢弃最后一个字符
-	    char[] hexChars = hexStr.toCharArray();   
-	    byte[] result = new byte[length];   
-	    for (int i = 0; i < length; i++) {   
-	        int pos = i * 2;
-	        String temp = StringUtils.concat(hexChars[pos], hexChars[pos + 1]);
-	        result[i] = (byte) Integer.parseInt(temp, 16);   
-	    }   
+	    byte[] result = new byte[hexStr.length() / 2];	//向下取整主动丢弃最后一个字符
+	    decodeHex(hexStr, 0, hexStr.length(), result, 0);
 	    return result;   
 	}
 	
 	/**
-	 * byte数组转16进制字符串
+	 * byte数组转16进制字符串(大写)
 	 * @param bytes
 	 * @return
 	 */
 	public static String bytes2Hex(byte[] bytes) {
+		return bytes2Hex(bytes, false);
+	}
+	
+	/**
+	 * byte数组转16进制字符串
+	 * @param bytes
+	 * @param lowerCase 是否输出小写
+	 * @return
+	 */
+	public static String bytes2Hex(byte[] bytes, boolean lowerCase) {
 		if(bytes == null) {
 			return null;
 		}
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < bytes.length; i++) {
-			String hex = Integer.toHexString(bytes[i] & 0xFF);
-			if (hex.length() == 1) {
-				hex = '0' + hex;
+		char[] chars = new char[bytes.length * 2];
+		encodeHex(bytes, 0, bytes.length, chars, 0, lowerCase);
+		return new String(chars);
+	}
+	
+	/**
+	 * 16进制编码,写到调用方提供的数组中
+	 * @param src 源数组
+	 * @param srcOffset 起始位置
+	 * @param length 编码的字节数
+	 * @param dst 目标数组,需要有length*2的空间
+	 * @param dstOffset 写入位置
+	 * @param lowerCase 是否输出小写
+	 * @return 写入的字符数
+	 */
+	public static int encodeHex(byte[] src, int srcOffset, int length, char[] dst, int dstOffset, boolean lowerCase) {
+		char[] digits = lowerCase ? HEX_LOWER : HEX_UPPER;
+		for(int i=0; i<length; i++) {
+			int b = src[srcOffset + i];
+			dst[dstOffset++] = digits[(b >> 4) & 0xF];
+			dst[dstOffset++] = digits[b & 0xF];
+		}
+		return length * 2;
+	}
+	
+	/**
+	 * 16进制编码,以ASCII字节写到调用方提供的数组中
+	 * @param src 源数组
+	 * @param srcOffset 起始位置
+	 * @param length 编码的字节数
+	 * @param dst 目标数组,需要有length*2的空间
+	 * @param dstOffset 写入位置
+	 * @param lowerCase 是否输出小写
+	 * @return 写入的字节数
+	 */
+	public static int encodeHex(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, boolean lowerCase) {
+		char[] digits = lowerCase ? HEX_LOWER : HEX_UPPER;
+		for(int i=0; i<length; i++) {
+			int b = src[srcOffset + i];
+			dst[dstOffset++] = (byte) digits[(b >> 4) & 0xF];
+			dst[dstOffset++] = (byte) digits[b & 0xF];
+		}
+		return length * 2;
+	}
+	
+	/**
+	 * 16进制编码src的剩余部分,以ASCII字节写到dst,支持direct buffer
+	 * @param src 源
+	 * @param dst 目标,剩余空间需要有src剩余字节数*2
+	 * @param lowerCase 是否输出小写
+	 * @return 写入的字节数
+	 * @throws java.nio.BufferOverflowException dst空间不足,此时两者都未被修改
+	 */
+	public static int encodeHex(ByteBuffer src, ByteBuffer dst, boolean lowerCase) {
+		int length = src.remaining();
+		if(dst.remaining() < length * 2) {
+			throw new BufferOverflowException();
+		}
+		if(src.hasArray() && dst.hasArray()) {
+			encodeHex(src.array(), src.arrayOffset() + src.position(), length, dst.array(), dst.arrayOffset() + dst.position(), lowerCase);
+			src.position(src.limit());
+			dst.position(dst.position() + length * 2);
+		} else {
+			char[] digits = lowerCase ? HEX_LOWER : HEX_UPPER;
+			while(src.hasRemaining()) {
+				int b = src.get();
+				dst.put((byte) digits[(b >> 4) & 0xF]);
+				dst.put((byte) digits[b & 0xF]);
+			}
+		}
+		return length * 2;
+	}
+	
+	/**
+	 * 16进制解码,写到调用方提供的数组中,不区分大小写
+	 * <p>
+	 * length为奇数时丢弃最后一个字符,与{@link #hex2Bytes(String)}相同
+	 * </p>
+	 * @param src 16进制字符
+	 * @param srcOffset 起始位置
+	 * @param length 字符数
+	 * @param dst 目标数组,需要有length/2的空间
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 * @throws NumberFormatException 包含不为16进制的字符
+	 */
+	public static int decodeHex(CharSequence src, int srcOffset, int length, byte[] dst, int dstOffset) throws NumberFormatException {
+		int count = length / 2;
+		for(int i=0; i<count; i++) {
+			int pos = srcOffset + i * 2;
+			dst[dstOffset + i] = (byte) (hexValue(src.charAt(pos), pos) << 4 | hexValue(src.charAt(pos + 1), pos + 1));
+		}
+		return count;
+	}
+	
+	/**
+	 * 16进制解码src(ASCII字节)的剩余部分写到dst,支持direct buffer
+	 * <p>
+	 * 剩余字节数为奇数时最后一个字节不解码,留在src中
+	 * </p>
+	 * @param src 16进制字符的ASCII字节
+	 * @param dst 目标,剩余空间需要有src剩余字节数/2
+	 * @return 写入的字节数
+	 * @throws NumberFormatException 包含不为16进制的字符,此时src停在出错的那一对字符之前
+	 * @throws java.nio.BufferOverflowException dst空间不足,此时两者都未被修改
+	 */
+	public static int decodeHex(ByteBuffer src, ByteBuffer dst) throws NumberFormatException {
+		int count = src.remaining() / 2;
+		if(dst.remaining() < count) {
+			throw new BufferOverflowException();
+		}
+		for(int i=0; i<count; i++) {
+			int pos = src.position();
+			byte value = (byte) (hexValue(src.get(pos) & 0xFF, i * 2) << 4 | hexValue(src.get(pos + 1) & 0xFF, i * 2 + 1));
+			dst.put(value);
+			src.position(pos + 2);
+		}
+		return count;
+	}
+	
+	/**
+	 * 流式16进制编码,适合大文件,不会关闭流
+	 * @param in 源
+	 * @param out 16进制字符
+	 * @param lowerCase 是否输出小写
+	 * @throws IOException 读写失败
+	 */
+	public static void encodeHex(InputStream in, Writer out, boolean lowerCase) throws IOException {
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		char[] chars = new char[STREAM_BUFFER_SIZE * 2];
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			out.write(chars, 0, encodeHex(buffer, 0, read, chars, 0, lowerCase));
+		}
+	}
+	
+	/**
+	 * 流式16进制解码,适合大文件,不会关闭流
+	 * <p>
+	 * 总字符数为奇数时丢弃最后一个字符,与{@link #hex2Bytes(String)}相同
+	 * </p>
+	 * @param in 16进制字符
+	 * @param out 解码结果
+	 * @throws IOException 读写失败
+	 * @throws NumberFormatException 包含不为16进制的字符,位置为在整个输入中的位置
+	 */
+	public static void decodeHex(Reader in, OutputStream out) throws IOException, NumberFormatException {
+		char[] chars = new char[STREAM_BUFFER_SIZE * 2];
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		long position = 0;	//已解码的字符数
+		int filled = 0;
+		int read;
+		while((read = in.read(chars, filled, chars.length - filled)) != -1) {
+			filled += read;
+			int count = filled / 2;
+			for(int i=0; i<count; i++) {
+				int pos = i * 2;
+				buffer[i] = (byte) (hexValue(chars[pos], position + pos) << 4 | hexValue(chars[pos + 1], position + pos + 1));
+			}
+			out.write(buffer, 0, count);
+			position += count * 2;
+			if(filled % 2 != 0) {	//奇数个字符,最后一个留到下次
+				chars[0] = chars[filled - 1];
+				filled = 1;
+			} else {
+				filled = 0;
 			}
-			sb.append(hex.toUpperCase());
 		}
-		return sb.toString();
+	}
+	
+	/*===========================Base64===========================*/
+	
+	/**
+	 * Base64编码(标准字母表,带=补齐,不换行)
+	 * @param bytes
+	 * @return
+	 */
+	public static String base64(byte[] bytes) {
+		if(bytes == null) {
+			return null;
+		}
+		char[] chars = new char[base64Length(bytes.length)];
+		encodeBase64(bytes, 0, bytes.length, chars, 0);
+		return new String(chars);
+	}
+	
+	/**
+	 * Base64解码,要求带=补齐,不能包含换行等其它字符
+	 * @param src
+	 * @return
+	 * @throws IllegalArgumentException 长度不是4的倍数或者包含非法字符
+	 */
+	public static byte[] deBase64(CharSequence src) throws IllegalArgumentException {
+		if(src == null) {
+			return null;
+		}
+		int length = src.length();
+		byte[] result = new byte[decodedLength(length, length > 0 ? src.charAt(length - 1) : 0, length > 1 ? src.charAt(length - 2) : 0)];
+		decodeBase64(src, 0, length, result, 0);
+		return result;
+	}
+	
+	/**
+	 * @param length 源字节数
+	 * @return Base64编码后的长度
+	 */
+	public static int base64Length(int length) {
+		return (length + 2) / 3 * 4;
+	}
+	
+	/**
+	 * Base64编码,以ASCII字节写到调用方提供的数组中
+	 * @param src 源数组
+	 * @param srcOffset 起始位置
+	 * @param length 编码的字节数
+	 * @param dst 目标数组,需要有{@link #base64Length(int)}的空间
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 */
+	public static int encodeBase64(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		int end = srcOffset + length;
+		int full = srcOffset + length / 3 * 3;
+		int d = dstOffset;
+		for(int i=srcOffset; i<full; i+=3) {
+			int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+			dst[d++] = (byte) BASE64_CHARS[bits >>> 18];
+			dst[d++] = (byte) BASE64_CHARS[(bits >>> 12) & 0x3F];
+			dst[d++] = (byte) BASE64_CHARS[(bits >>> 6) & 0x3F];
+			dst[d++] = (byte) BASE64_CHARS[bits & 0x3F];
+		}
+		if(full < end) {
+			int bits = (src[full] & 0xFF) << 16 | (full + 1 < end ? (src[full + 1] & 0xFF) << 8 : 0);
+			dst[d++] = (byte) BASE64_CHARS[bits >>> 18];
+			dst[d++] = (byte) BASE64_CHARS[(bits >>> 12) & 0x3F];
+			dst[d++] = full + 1 < end ? (byte) BASE64_CHARS[(bits >>> 6) & 0x3F] : (byte) '=';
+			dst[d++] = '=';
+		}
+		return d - dstOffset;
+	}
+	
+	/**
+	 * Base64编码,写到调用方提供的数组中
+	 * @param src 源数组
+	 * @param srcOffset 起始位置
+	 * @param length 编码的字节数
+	 * @param dst 目标数组,需要有{@link #base64Length(int)}的空间
+	 * @param dstOffset 写入位置
+	 * @return 写入的字符数
+	 */
+	public static int encodeBase64(byte[] src, int srcOffset, int length, char[] dst, int dstOffset) {
+		int end = srcOffset + length;
+		int full = srcOffset + length / 3 * 3;
+		int d = dstOffset;
+		for(int i=srcOffset; i<full; i+=3) {
+			int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+			dst[d++] = BASE64_CHARS[bits >>> 18];
+			dst[d++] = BASE64_CHARS[(bits >>> 12) & 0x3F];
+			dst[d++] = BASE64_CHARS[(bits >>> 6) & 0x3F];
+			dst[d++] = BASE64_CHARS[bits & 0x3F];
+		}
+		if(full < end) {
+			int bits = (src[full] & 0xFF) << 16 | (full + 1 < end ? (src[full + 1] & 0xFF) << 8 : 0);
+			dst[d++] = BASE64_CHARS[bits >>> 18];
+			dst[d++] = BASE64_CHARS[(bits >>> 12) & 0x3F];
+			dst[d++] = full + 1 < end ? BASE64_CHARS[(bits >>> 6) & 0x3F] : '=';
+			dst[d++] = '=';
+		}
+		return d - dstOffset;
+	}
+	
+	/**
+	 * Base64编码src的剩余部分,以ASCII字节写到dst,支持direct buffer
+	 * @param src 源
+	 * @param dst 目标,剩余空间需要有{@link #base64Length(int)}
+	 * @return 写入的字节数
+	 * @throws java.nio.BufferOverflowException dst空间不足,此时两者都未被修改
+	 */
+	public static int encodeBase64(ByteBuffer src, ByteBuffer dst) {
+		int length = src.remaining();
+		int encodedLength = base64Length(length);
+		if(dst.remaining() < encodedLength) {
+			throw new BufferOverflowException();
+		}
+		if(src.hasArray() && dst.hasArray()) {
+			encodeBase64(src.array(), src.arrayOffset() + src.position(), length, dst.array(), dst.arrayOffset() + dst.position());
+			src.position(src.limit());
+			dst.position(dst.position() + encodedLength);
+			return encodedLength;
+		}
+		byte[] group = new byte[3];
+		byte[] encoded = new byte[4];
+		while(src.hasRemaining()) {
+			int count = Math.min(3, src.remaining());
+			src.get(group, 0, count);
+			dst.put(encoded, 0, encodeBase64(group, 0, count, encoded, 0));
+		}
+		return encodedLength;
+	}
+	
+	/**
+	 * Base64解码,写到调用方提供的数组中,一次遍历同时校验
+	 * <p>
+	 * 要求带=补齐,=只能出现在末尾
+	 * </p>
+	 * @param src Base64字符
+	 * @param srcOffset 起始位置
+	 * @param length 字符数,必须是4的倍数
+	 * @param dst 目标数组
+	 * @param dstOffset 写入位置
+	 * @return 写入的字节数
+	 * @throws IllegalArgumentException 长度不是4的倍数或者包含非法字符
+	 */
+	public static int decodeBase64(CharSequence src, int srcOffset, int length, byte[] dst, int dstOffset) throws IllegalArgumentException {
+		checkBase64Length(length);
+		int d = dstOffset;
+		int end = srcOffset + length;
+		for(int i=srcOffset; i<end; i+=4) {
+			int quad = decodeQuad(src.charAt(i), src.charAt(i + 1), src.charAt(i + 2), src.charAt(i + 3), i, i + 4 == end);
+			d = writeQuad(quad, dst, d);
+		}
+		return d - dstOffset;
+	}
+	
+	/**
+	 * Base64解码src(ASCII字节)的剩余部分写到dst,支持direct buffer
+	 * @param src Base64字符的ASCII字节,剩余字节数必须是4的倍数
+	 * @param dst 目标,剩余空间需要有src剩余字节数/4*3
+	 * @return 写入的字节数
+	 * @throws IllegalArgumentException 长度不是4的倍数或者包含非法字符,此时src停在出错的那一组字符之前
+	 * @throws java.nio.BufferOverflowException dst空间不足,此时两者都未被修改
+	 */
+	public static int decodeBase64(ByteBuffer src, ByteBuffer dst) throws IllegalArgumentException {
+		int length = src.remaining();
+		checkBase64Length(length);
+		if(dst.remaining() < length / 4 * 3) {
+			throw new BufferOverflowException();
+		}
+		int start = dst.position();
+		byte[] group = new byte[3];
+		for(int i=0; i<length; i+=4) {
+			int pos = src.position();
+			int quad = decodeQuad(src.get(pos) & 0xFF, src.get(pos + 1) & 0xFF, src.get(pos + 2) & 0xFF, src.get(pos + 3) & 0xFF, i, i + 4 == length);
+			dst.put(group, 0, writeQuad(quad, group, 0));
+			src.position(pos + 4);
+		}
+		return dst.position() - start;
+	}
+	
+	/**
+	 * 流式Base64编码,适合大文件,不会关闭流
+	 * @param in 源
+	 * @param out Base64字符的ASCII字节
+	 * @throws IOException 读写失败
+	 */
+	public static void encodeBase64(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE / 3 * 3];
+		byte[] encoded = new byte[base64Length(buffer.length)];
+		while(true) {
+			int filled = fill(in, buffer, 0);
+			out.write(encoded, 0, encodeBase64(buffer, 0, filled, encoded, 0));
+			if(filled < buffer.length) {	//读满之前不会产生补齐,中间不会出现=
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * 流式Base64解码,适合大文件,不会关闭流
+	 * @param in Base64字符的ASCII字节,要求带=补齐,不能包含换行
+	 * @param out 解码结果
+	 * @throws IOException 读写失败
+	 * @throws IllegalArgumentException 长度不是4的倍数或者包含非法字符,位置为在整个输入中的位置
+	 */
+	public static void decodeBase64(InputStream in, OutputStream out) throws IOException, IllegalArgumentException {
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE / 4 * 4];
+		byte[] decoded = new byte[buffer.length / 4 * 3];
+		long position = 0;
+		int carry = 0;
+		while(true) {
+			int filled = carry + fill(in, buffer, carry);
+			boolean end = filled < buffer.length;
+			//没到末尾时最后一组留到下次,确认是否最后一组后再解码,保证只有最后一组可以带=
+			int decodeLength = end ? filled : filled - 4;
+			if(end) {
+				checkBase64Length(filled);
+			}
+			int d = 0;
+			for(int i=0; i<decodeLength; i+=4) {
+				int quad = decodeQuad(buffer[i] & 0xFF, buffer[i + 1] & 0xFF, buffer[i + 2] & 0xFF, buffer[i + 3] & 0xFF, position + i, end && i + 4 == filled);
+				d = writeQuad(quad, decoded, d);
+			}
+			out.write(decoded, 0, d);
+			if(end) {
+				return;
+			}
+			System.arraycopy(buffer, decodeLength, buffer, 0, 4);
+			carry = 4;
+			position += decodeLength;
+		}
+	}
+	
+	/*===========================内部方法===========================*/
+	
+	private static int hexValue(int c, long position) {
+		int value = c >= 0 && c < 128 ? HEX_VALUES[c] : -1;
+		if(value < 0) {
+			throw new NumberFormatException("含有非法字符:"+(char) c+",位置:"+position);
+		}
+		return value;
+	}
+	
+	private static int base64Value(int c, long position) {
+		int value = c >= 0 && c < 128 ? BASE64_VALUES[c] : -1;
+		if(value < 0) {
+			throw new IllegalArgumentException("含有非法字符:"+(char) c+",位置:"+position);
+		}
+		return value;
+	}
+	
+	/**
+	 * 解码4个Base64字符
+	 * @param position 第一个字符的位置,用于错误信息
+	 * @param last 是否最后一组,只有最后一组可以带=
+	 * @return 低24位为数据,高8位为有效字节数(1~3)
+	 */
+	private static int decodeQuad(int c0, int c1, int c2, int c3, long position, boolean last) {
+		int bits = base64Value(c0, position) << 18 | base64Value(c1, position + 1) << 12;
+		if(last && c3 == '=') {
+			if(c2 == '=') {
+				return 1 << 24 | bits;
+			}
+			return 2 << 24 | bits | base64Value(c2, position + 2) << 6;
+		}
+		return 3 << 24 | bits | base64Value(c2, position + 2) << 6 | base64Value(c3, position + 3);
+	}
+	
+	private static int writeQuad(int quad, byte[] dst, int offset) {
+		int count = quad >>> 24;
+		dst[offset++] = (byte) (quad >>> 16);
+		if(count > 1) {
+			dst[offset++] = (byte) (quad >>> 8);
+		}
+		if(count > 2) {
+			dst[offset++] = (byte) quad;
+		}
+		return offset;
+	}
+	
+	private static void checkBase64Length(int length) {
+		if(length % 4 != 0) {
+			throw new IllegalArgumentException("Base64串的长度不为4的倍数:"+length);
+		}
+	}
+	
+	private static int decodedLength(int length, int lastChar, int secondLastChar) {
+		checkBase64Length(length);
+		int padding = lastChar == '=' ? (secondLastChar == '=' ? 2 : 1) : 0;
+		return length / 4 * 3 - padding;
+	}
+	
+	/**
+	 * 从offset开始读满buffer
+	 * @return 读到的字节数,少于buffer剩余长度代表已到末尾
+	 */
+	private static int fill(InputStream in, byte[] buffer, int offset) throws IOException {
+		int filled = offset;
+		int read;
+		while(filled < buffer.length && (read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+			filled += read;
+		}
+		return filled - offset;
 	}
 	
 	/**
@@ -170,4 +676,76 @@ public class BHDConvertUtils {
 		}
 		return sb.toString();
 	}
+	
+	public static void main(String[] args) throws IOException {
+		/* 与原实现(StringBuilder+Integer.toHexString/parseInt)和commons-codec的耗时对比 */
+		byte[] data = new byte[4096];
+		new Random(1).nextBytes(data);
+		String hex = bytes2Hex(data);
+		String base64 = base64(data);
+		char[] hexChars = new char[data.length * 2];
+		byte[] base64Bytes = new byte[base64Length(data.length)];
+		int n = 20_000;
+		for(int round=0; round<3; round++) {	//前两轮预热
+			long t0 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				StringBuilder sb = new StringBuilder();
+				for (byte b : data) {
+					String h = Integer.toHexString(b & 0xFF);
+					sb.append((h.length() == 1 ? '0' + h : h).toUpperCase());
+				}
+				sb.toString();
+			}
+			long t1 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				Hex.encodeHexString(data);
+			}
+			long t2 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				bytes2Hex(data);
+			}
+			long t3 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				encodeHex(data, 0, data.length, hexChars, 0, false);
+			}
+			long t4 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				byte[] result = new byte[hex.length() / 2];
+				for (int j = 0; j < result.length; j++) {
+					result[j] = (byte) Integer.parseInt(hex.substring(j * 2, j * 2 + 2), 16);
+				}
+			}
+			long t5 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				hex2Bytes(hex);
+			}
+			long t6 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				Base64.encodeBase64String(data);
+			}
+			long t7 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				encodeBase64(data, 0, data.length, base64Bytes, 0);
+			}
+			long t8 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				Base64.decodeBase64(base64);
+			}
+			long t9 = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				deBase64(base64);
+			}
+			long t10 = System.nanoTime();
+			System.out.printf("4KB 16进制编码: 原实现 %d ns, commons %d ns, bytes2Hex %d ns, 写入char[] %d ns%n",
+					(t1-t0)/n, (t2-t1)/n, (t3-t2)/n, (t4-t3)/n);
+			System.out.printf("4KB 16进制解码: 原实现 %d ns, hex2Bytes %d ns%n", (t5-t4)/n, (t6-t5)/n);
+			System.out.printf("4KB Base64: commons编码 %d ns, 写入byte[] %d ns, commons解码 %d ns, deBase64 %d ns%n",
+					(t7-t6)/n, (t8-t7)/n, (t9-t8)/n, (t10-t9)/n);
+		}
+		StringWriter writer = new StringWriter();
+		encodeHex(new ByteArrayInputStream(data), writer, false);
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		decodeHex(new StringReader(writer.toString()), decoded);
+		System.out.println("流式16进制还原"+(Arrays.equals(decoded.toByteArray(), data)?"一致":"不一致"));
+	}
 }
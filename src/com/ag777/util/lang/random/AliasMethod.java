@@ -1,28 +1,35 @@
 package com.ag777.util.lang.random;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.TreeMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 /**
  * Java实现Alias Method概率抽奖算法
+ * <p>[修改]采用Vose的数值稳定版本,用基本类型数组在O(n)内建表,不产生装箱对象;
+ * 抽样时使用调用线程的ThreadLocalRandom,可以在任意线程中并发调用;
+ * 每次抽样只消耗一个随机double(整数部分选列,小数部分抛硬币)
+ * <p>[新增]可复现的抽样:{@link #next(SplittableRandom)}使用指定的随机数生成器,
+ * {@link #ints(long, long)}根据种子生成抽样流,并行执行时结果也和串行完全一致
  * @author https://blog.csdn.net/z69183787/article/details/53782322
- * @version last modify at 2020年06月14日
+ * @version last modify at 2026年10月18日
  */
 public class AliasMethod {
 
-	/* The random number generator used to sample from the distribution. */
-    private final ThreadLocalRandom random;
- 
+    /* 与SplittableRandom保持一致的常量,用于生成可随机访问的随机数序列 */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
     /* The probability and alias tables. */
     private final int[] alias;
     private final double[] probability;
- 
+
     /**
      * Constructs a new AliasMethod to sample from a discrete distribution and
      * hand back outcomes based on the probability distribution.
@@ -34,133 +41,216 @@ public class AliasMethod {
      * @param probabilities The list of probabilities.
      */
     public AliasMethod(List<Double> probabilities) {
-        this(probabilities, ThreadLocalRandom.current());
+        this(toArray(probabilities));
     }
- 
+
     /**
-     * Constructs a new AliasMethod to sample from a discrete distribution and
-     * hand back outcomes based on the probability distribution.
-     * <p/>
-     * Given as input a list of probabilities corresponding to outcomes 0, 1,
-     * ..., n - 1, along with the random number generator that should be used
-     * as the underlying generator, this constructor creates the probability
-     * and alias tables needed to efficiently sample from this distribution.
+     * [修改]random参数已不再使用,抽样总是使用调用线程的ThreadLocalRandom
      *
      * @param probabilities The list of probabilities.
      * @param random        The random number generator
+     * @deprecated 使用{@link #AliasMethod(List)}
      */
+    @Deprecated
     public AliasMethod(List<Double> probabilities, ThreadLocalRandom random) {
-        /* Begin by doing basic structural checks on the inputs. */
-        if (probabilities == null || random == null)
+        this(probabilities);
+        if (random == null)
             throw new NullPointerException();
-        if (probabilities.size() == 0)
+    }
+
+    /**
+     * 根据权重建表
+     * <p>
+     * 权重不要求和为1,会按总和归一化
+     * </p>
+     * @param weights 各结果的权重,不能为负数,总和必须大于0
+     */
+    public AliasMethod(double[] weights) {
+        if (weights == null)
+            throw new NullPointerException();
+        int n = weights.length;
+        if (n == 0)
             throw new IllegalArgumentException("Probability vector must be nonempty.");
- 
-        /* Allocate space for the probability and alias tables. */
-        probability = new double[probabilities.size()];
-        alias = new int[probabilities.size()];
- 
-        /* Store the underlying generator. */
-        this.random = random;
- 
-        /* Compute the average probability and cache it for later use. */
-        final double average = 1.0 / probabilities.size();
- 
-        /* Make a copy of the probabilities list, since we will be making
-         * changes to it.
-         */
-        probabilities = new ArrayList<Double>(probabilities);
- 
-        /* Create two stacks to act as worklists as we populate the tables. */
-        Deque<Integer> small = new ArrayDeque<Integer>();
-        Deque<Integer> large = new ArrayDeque<Integer>();
- 
-        /* Populate the stacks with the input probabilities. */
-        for (int i = 0; i < probabilities.size(); ++i) {
-            /* If the probability is below the average probability, then we add
-             * it to the small list; otherwise we add it to the large list.
-             */
-            if (probabilities.get(i) >= average)
-                large.add(i);
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("权重必须是非负有限数:" + weight);
+            }
+            sum += weight;
+        }
+        if (!(sum > 0) || Double.isInfinite(sum)) {
+            throw new IllegalArgumentException("权重总和必须是正有限数:" + sum);
+        }
+
+        probability = new double[n];
+        alias = new int[n];
+
+        /* probability先存放缩放后的权重(平均值为1),确定一列后原地覆盖为该列的概率 */
+        for (int i = 0; i < n; i++) {
+            probability[i] = weights[i] * n / sum;
+        }
+
+        /* 一个数组同时作为两个栈:small从头部增长,large从尾部增长 */
+        int[] worklist = new int[n];
+        int small = 0;
+        int large = n;
+        for (int i = 0; i < n; i++) {
+            if (probability[i] < 1.0)
+                worklist[small++] = i;
             else
-                small.add(i);
-        }
-        
-        /* As a note: in the mathematical specification of the algorithm, we
-         * will always exhaust the small list before the big list.  However,
-         * due to floating point inaccuracies, this is not necessarily true.
-         * Consequently, this inner loop (which tries to pair small and large
-         * elements) will have to check that both lists aren't empty.
-         */
-        while (!small.isEmpty() && !large.isEmpty()) {
-            /* Get the index of the small and the large probabilities. */
-            int less = small.removeLast();
-            int more = large.removeLast();
- 
-            /* These probabilities have not yet been scaled up to be such that
-             * 1/n is given weight 1.0.  We do this here instead.
-             */
-            probability[less] = probabilities.get(less) * probabilities.size();
+                worklist[--large] = i;
+        }
+
+        /* 浮点误差可能导致其中一个栈先空,两个都要判断 */
+        while (small > 0 && large < n) {
+            int less = worklist[--small];
+            int more = worklist[large++];
             alias[less] = more;
- 
-            /* Decrease the probability of the larger one by the appropriate
-             * amount.
-             */
-            probabilities.set(more,
-                    (probabilities.get(more) + probabilities.get(less)) - average);
- 
-            /* If the new probability is less than the average, add it into the
-             * small list; otherwise add it to the large list.
-             */
-            if (probabilities.get(more) >= 1.0 / probabilities.size())
-                large.add(more);
+            /* Vose:先加再减,避免more的权重被反复减小时误差累积 */
+            probability[more] = (probability[more] + probability[less]) - 1.0;
+            if (probability[more] < 1.0)
+                worklist[small++] = more;
             else
-                small.add(more);
-        }
- 
-        /* At this point, everything is in one list, which means that the
-         * remaining probabilities should all be 1/n.  Based on this, set them
-         * appropriately.  Due to numerical issues, we can't be sure which
-         * stack will hold the entries, so we empty both.
-         */
-        while (!small.isEmpty())
-            probability[small.removeLast()] = 1.0;
-        while (!large.isEmpty())
-            probability[large.removeLast()] = 1.0;
+                worklist[--large] = more;
+        }
+
+        /* 剩下的理论上都等于1,误差部分直接置为1 */
+        while (small > 0) {
+            int i = worklist[--small];
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+        while (large < n) {
+            int i = worklist[large++];
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
     }
- 
+
     /**
      * Samples a value from the underlying distribution.
      *
      * @return A random value sampled from the underlying distribution.
      */
     public int next() {
+        return sample(ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * 使用指定的随机数生成器抽样,结果可复现
+     * <p>
+     * SplittableRandom非线程安全,多线程共用时需要调用方同步,或者各自split()一个
+     * </p>
+     * @param random 随机数生成器
+     * @return 结果下标
+     */
+    public int next(SplittableRandom random) {
+        return sample(random.nextDouble());
+    }
+
+    /**
+     * 批量抽样
+     * @param n 抽样个数
+     * @param out 结果数组,长度不能小于n
+     */
+    public void next(int n, int[] out) {
+        if (n < 0 || n > out.length) {
+            throw new IllegalArgumentException("抽样个数必须在[0," + out.length + "]之间:" + n);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < n; i++) {
+            out[i] = sample(random.nextDouble());
+        }
+    }
+
+    /**
+     * 抽样流,可以并行
+     * @param n 抽样个数
+     * @return 结果下标流
+     */
+    public IntStream ints(long n) {
+        return ThreadLocalRandom.current().doubles(n).mapToInt(this::sample);
+    }
+
+    /**
+     * 根据种子生成的抽样流,可以并行
+     * <p>
+     * 第i个结果只由种子和i决定,与并行度和执行顺序无关,同一个种子总是得到相同的序列,
+     * 且与new SplittableRandom(seed)依次调用{@link #next(SplittableRandom)}的结果相同
+     * </p>
+     * @param n 抽样个数
+     * @param seed 种子
+     * @return 结果下标流
+     */
+    public IntStream ints(long n, long seed) {
+        if (n < 0) {
+            throw new IllegalArgumentException("抽样个数不能小于0:" + n);
+        }
+        return LongStream.range(0, n).mapToInt(i -> sample(unit(seed, i)));
+    }
+
+    /**
+     * @return 结果个数
+     */
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * 将[0,1)之间的均匀随机数映射为结果下标
+     */
+    int sample(double u) {
         /* Generate a fair die roll to determine which column to inspect. */
-        int column = random.nextInt(probability.length);
- 
+        double scaled = u * probability.length;
+        int column = (int) scaled;
+        if (column >= probability.length) {
+            column = probability.length - 1;
+        }
+
         /* Generate a biased coin toss to determine which option to pick. */
-        boolean coinToss = random.nextDouble() < probability[column];
-        
+        boolean coinToss = scaled - column < probability[column];
+
         /* Based on the outcome, return either the column or its alias. */
-       /* Log.i("1234","column="+column);
-        Log.i("1234","coinToss="+coinToss);
-        Log.i("1234","alias[column]="+coinToss);*/
         return coinToss ? column : alias[column];
     }
- 
+
+    /**
+     * new SplittableRandom(seed)第i+1次nextDouble()的值,可随机访问
+     */
+    static double unit(long seed, long i) {
+        return (mix64(seed + (i + 1) * GOLDEN_GAMMA) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /* 与SplittableRandom的算法保持一致 */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double[] toArray(List<Double> probabilities) {
+        if (probabilities == null)
+            throw new NullPointerException();
+        double[] weights = new double[probabilities.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = probabilities.get(i);
+        }
+        return weights;
+    }
+
     public static void main(String[] args) {
         TreeMap<String, Double> map = new TreeMap<String, Double>();
         map.put("1金币", 0.13);
         map.put("2金币", 0.87);
- 
+
         List<Double> list = new ArrayList<Double>(map.values());
         List<String> gifts = new ArrayList<String>(map.keySet());
- 
+
         AliasMethod method = new AliasMethod(list);
- 
+
         Map<String, AtomicInteger> resultMap = new HashMap<String, AtomicInteger>();
- 
-        for (int i = 0; i < 1; i++) {
+
+        for (int i = 0; i < 100000; i++) {
             int index = method.next();
             String key = gifts.get(index);
             if (!resultMap.containsKey(key)) {
@@ -171,6 +261,27 @@ public class AliasMethod {
         for (String key : resultMap.keySet()) {
             System.out.println(key + "==" + resultMap.get(key));
         }
- 
+
+        /* 100万个结果建表和批量抽样的耗时 */
+        int n = 1_000_000;
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = i + 1;
+        }
+        int[] out = new int[n];
+        for (int round = 0; round < 3; round++) {	//前两轮预热
+            long start = System.nanoTime();
+            AliasMethod large = new AliasMethod(weights);
+            long built = System.nanoTime();
+            large.next(n, out);
+            long sampled = System.nanoTime();
+            long sum = large.ints(10L * n).parallel().asLongStream().sum();
+            long streamed = System.nanoTime();
+            System.out.printf("建表 %d ms, 批量抽样 %.1f 百万次/秒, 并行流 %.1f 百万次/秒, 平均下标 %.0f(理论值 %.0f)%n",
+                    (built - start) / 1_000_000,
+                    n * 1000.0 / (sampled - built),
+                    10.0 * n * 1000 / (streamed - sampled),
+                    (double) sum / (10L * n), (2.0 * n + 1) / 3 - 1);
+        }
     }
 }
@@ -0,0 +1,365 @@
+package com.ag777.util.lang.random;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+import com.ag777.util.lang.collection.MapUtils;
+
+/**
+ * 权重可修改的奖池
+ * <p>
+ * 和{@link RandomPool}用法相同,区别是可以随时增删奖品、修改单个奖品的权重:
+ * 内部用树状数组(Fenwick tree)保存权重前缀和,setWeight/add/remove/draw都是O(log n),
+ * 不需要像{@link AliasMethod}那样每次修改都O(n)重新建表<br>
+ * 线程安全:抽奖使用乐观读,不阻塞也不写共享状态,读到修改中的数据时自动退化为读锁重试;修改操作互斥<br>
+ * 权重以增量方式累加,为避免浮点误差累积,每修改capacity次会按原始权重重建一次树(均摊O(1))
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 奖品类型
+ */
+public class DynamicRandomPool<T> {
+
+	/* 默认初始容量 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final StampedLock lock = new StampedLock();
+	// 以下字段只在写锁内修改
+	private final Map<T, Integer> index = new HashMap<>();
+	private Table table;
+	private int size;			//已使用的槽位数(含已删除后空闲的)
+	private int[] free;			//空闲槽位栈
+	private int freeCount;
+	private int updates;		//上次重建后的修改次数
+
+	public DynamicRandomPool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity 初始容量,不够时自动翻倍
+	 */
+	public DynamicRandomPool(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("容量必须大于0:" + capacity);
+		}
+		int cap = 1;
+		while (cap < capacity && cap < (1 << 30)) {
+			cap <<= 1;
+		}
+		table = new Table(cap);
+		free = new int[cap];
+	}
+
+	/**
+	 * @param map 奖品-权重
+	 */
+	public DynamicRandomPool(Map<T, Double> map) {
+		this(Math.max(map.size(), DEFAULT_CAPACITY));
+		map.forEach(this::setWeight);
+	}
+
+	/**
+	 * 抽奖
+	 * @return 奖品,奖池为空或者总权重为0时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public T draw() {
+		double u = ThreadLocalRandom.current().nextDouble();
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			Object key = table.find(u);
+			if (lock.validate(stamp)) {
+				return (T) key;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return (T) table.find(u);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * 设置奖品的权重,奖品不存在时添加
+	 * @param key 奖品
+	 * @param weight 权重,为0时奖品保留但不会被抽中
+	 */
+	public void setWeight(T key, double weight) {
+		checkWeight(weight);
+		long stamp = lock.writeLock();
+		try {
+			Integer slot = index.get(key);
+			if (slot == null) {
+				insert(key, weight);
+			} else {
+				update(slot, weight);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * 添加奖品
+	 * @param key 奖品
+	 * @param weight 权重
+	 * @return 是否添加成功,奖品已存在时不修改其权重并返回false
+	 */
+	public boolean add(T key, double weight) {
+		checkWeight(weight);
+		long stamp = lock.writeLock();
+		try {
+			if (index.containsKey(key)) {
+				return false;
+			}
+			insert(key, weight);
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * 移除奖品
+	 * @param key 奖品
+	 * @return 奖品是否存在
+	 */
+	public boolean remove(T key) {
+		long stamp = lock.writeLock();
+		try {
+			Integer slot = index.remove(key);
+			if (slot == null) {
+				return false;
+			}
+			update(slot, 0);
+			table.keys[slot] = null;
+			free[freeCount++] = slot;
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param key 奖品
+	 * @return 权重,奖品不存在时返回null
+	 */
+	public Double getWeight(T key) {
+		long stamp = lock.readLock();
+		try {
+			Integer slot = index.get(key);
+			return slot == null ? null : table.weights[slot];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return 奖品个数
+	 */
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return index.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return 总权重
+	 */
+	public double totalWeight() {
+		long stamp = lock.readLock();
+		try {
+			return table.total();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private void insert(T key, double weight) {
+		int slot;
+		if (freeCount > 0) {
+			slot = free[--freeCount];
+		} else {
+			if (size == table.capacity) {
+				grow();
+			}
+			slot = size++;
+		}
+		index.put(key, slot);
+		table.keys[slot] = key;
+		update(slot, weight);
+	}
+
+	private void update(int slot, double weight) {
+		Table t = table;
+		double delta = weight - t.weights[slot];
+		t.weights[slot] = weight;
+		if (++updates >= t.capacity) {
+			t.rebuild();
+			updates = 0;
+		} else {
+			t.add(slot, delta);
+		}
+	}
+
+	/**
+	 * 容量翻倍,新表建好后整体替换,乐观读拿到的旧表仍然完整可读
+	 */
+	private void grow() {
+		Table old = table;
+		if (old.capacity >= (1 << 30)) {
+			throw new IllegalStateException("奖池容量已达上限");
+		}
+		Table bigger = new Table(old.capacity << 1);
+		System.arraycopy(old.weights, 0, bigger.weights, 0, old.capacity);
+		System.arraycopy(old.keys, 0, bigger.keys, 0, old.capacity);
+		bigger.rebuild();
+		int[] biggerFree = new int[bigger.capacity];
+		System.arraycopy(free, 0, biggerFree, 0, freeCount);
+		free = biggerFree;
+		table = bigger;
+		updates = 0;
+	}
+
+	private static void checkWeight(double weight) {
+		if (!(weight >= 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException("权重必须是非负有限数:" + weight);
+		}
+	}
+
+	/**
+	 * 树状数组及对应的权重和奖品,容量为2的幂
+	 */
+	private static final class Table {
+		private final int capacity;
+		private final double[] tree;		//下标从1开始
+		private final double[] weights;
+		private final Object[] keys;
+
+		private Table(int capacity) {
+			this.capacity = capacity;
+			tree = new double[capacity + 1];
+			weights = new double[capacity];
+			keys = new Object[capacity];
+		}
+
+		private void add(int slot, double delta) {
+			for (int i = slot + 1; i <= capacity; i += i & -i) {
+				tree[i] += delta;
+			}
+		}
+
+		/**
+		 * 按原始权重O(n)重建,消除增量累加的误差
+		 */
+		private void rebuild() {
+			System.arraycopy(weights, 0, tree, 1, capacity);
+			tree[0] = 0;
+			for (int i = 1; i <= capacity; i++) {
+				int parent = i + (i & -i);
+				if (parent <= capacity) {
+					tree[parent] += tree[i];
+				}
+			}
+		}
+
+		private double total() {
+			//容量为2的幂,最后一个节点就是所有权重之和
+			return tree[capacity];
+		}
+
+		/**
+		 * 找到前缀和第一个超过u*total的槽位,返回其奖品
+		 * <p>
+		 * 乐观读时数组可能正在被修改,这里只保证不越界,结果由调用方校验
+		 * </p>
+		 */
+		private Object find(double u) {
+			double total = total();
+			if (!(total > 0)) {
+				return null;
+			}
+			double target = u * total;
+			int pos = 0;
+			for (int step = capacity; step > 0; step >>= 1) {
+				int next = pos + step;
+				if (next <= capacity && tree[next] <= target) {
+					target -= tree[next];
+					pos = next;
+				}
+			}
+			if (pos >= capacity || !(weights[pos] > 0)) {
+				//浮点误差导致落在权重为0的槽位上,取最近的有效槽位
+				pos = nearest(Math.min(pos, capacity - 1));
+			}
+			return pos < 0 ? null : keys[pos];
+		}
+
+		private int nearest(int pos) {
+			for (int offset = 1; offset < capacity; offset++) {
+				if (pos - offset >= 0 && weights[pos - offset] > 0) {
+					return pos - offset;
+				}
+				if (pos + offset < capacity && weights[pos + offset] > 0) {
+					return pos + offset;
+				}
+			}
+			return weights[pos] > 0 ? pos : -1;
+		}
+	}
+
+
+	public static void main(String[] args) {
+		DynamicRandomPool<String> pool = new DynamicRandomPool<>(MapUtils.of(
+				String.class, Double.class,
+				"ssr", 0.02d,
+				"sr", 0.08d,
+				"r", 0.5d,
+				"n", 0.4d
+				));
+		pool.setWeight("ssr", 0.5d);	//活动期间提高ssr概率
+		pool.remove("n");
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 1_000_000; i++) {
+			counts.merge(pool.draw(), 1, Integer::sum);
+		}
+		System.out.println(counts);	//约 ssr:r:sr = 0.5:0.5:0.08
+
+		/* 10万个奖品时单次改权重的耗时,对比AliasMethod重建 */
+		int n = 100_000;
+		DynamicRandomPool<Integer> large = new DynamicRandomPool<>(n);
+		double[] weights = new double[n];
+		for (int i = 0; i < n; i++) {
+			large.setWeight(i, i + 1);
+			weights[i] = i + 1;
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int round = 0; round < 2; round++) {	//第一轮预热
+			int ops = 1_000_000;
+			long start = System.nanoTime();
+			for (int i = 0; i < ops; i++) {
+				large.setWeight(random.nextInt(n), random.nextDouble() * n);
+			}
+			long updated = System.nanoTime();
+			for (int i = 0; i < ops; i++) {
+				large.draw();
+			}
+			long drawn = System.nanoTime();
+			for (int i = 0; i < 100; i++) {
+				weights[random.nextInt(n)] = random.nextDouble() * n;
+				new AliasMethod(weights).next();
+			}
+			long rebuilt = System.nanoTime();
+			System.out.printf("setWeight %.0f ns/op, draw %.0f ns/op, AliasMethod重建 %.0f ns/op%n",
+					(double) (updated - start) / ops, (double) (drawn - updated) / ops, (double) (rebuilt - drawn) / 100);
+		}
+	}
+}
@@ -3,29 +3,34 @@ package com.ag777.util.lang.random;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 
 import com.ag777.util.lang.collection.MapUtils;
 
 /**
  * 带权重的奖池，适合权重不变的情况多次抽奖使用,内部采用Alias Method概率抽奖算法实现
+ * <p>[修改]带种子的奖池改用SplittableRandom,同一个种子的抽奖结果可复现;
+ * 大批量模拟使用{@link #drawStream(long)},并行执行时结果也和串行完全一致
  * @author ag777
- * @version create on 2020年06月14日, last modify at 2020年06月14日
- * @param <T> 
+ * @version create on 2020年06月14日, last modify at 2026年10月18日
+ * @param <T>
  */
 public class RandomPool<T> {
 
 	private List<T> keyList;
 	private AliasMethod am;
-	
+	private SplittableRandom random;	//带种子时的随机数生成器,为null时使用ThreadLocalRandom
+
 	public RandomPool(Map<T, Double> map) {
 		init(map, null);
 	}
-	
+
 	public RandomPool(Map<T, Double> map, long randomSeed) {
 		init(map, randomSeed);
 	}
-	
+
 	private void init(Map<T, Double> map, Long randomSeed) {
 		keyList = new ArrayList<>(map.size());
 		List<Double> probabilities =  new ArrayList<>(map.size());
@@ -33,19 +38,53 @@ public class RandomPool<T> {
 			keyList.add(key);
 			probabilities.add(probability);
 		});
-		ThreadLocalRandom random = ThreadLocalRandom.current();
 		if(randomSeed != null) {
-			random.setSeed(randomSeed);
+			random = new SplittableRandom(randomSeed);
 		}
-		am = new AliasMethod(probabilities, random);
+		am = new AliasMethod(probabilities);
 	}
-	
+
+	/**
+	 * 抽奖
+	 * <p>
+	 * 不带种子时无锁;带种子时共用一个随机数生成器,多线程调用会互斥,且结果顺序取决于线程调度
+	 * </p>
+	 * @return 奖品
+	 */
 	public T draw() {
-		int index = am.next();
+		int index;
+		if(random == null) {
+			index = am.next();
+		} else {
+			synchronized (this) {
+				index = am.next(random);
+			}
+		}
 		return keyList.get(index);
 	}
-	
-	
+
+	/**
+	 * 批量抽奖,可以调用parallel()并行
+	 * <p>
+	 * 每次调用先从奖池的随机数生成器取一个种子(不带种子的奖池取ThreadLocalRandom),
+	 * 流中第i个结果只由该种子和i决定:带种子的奖池按相同顺序调用,无论并行度多少结果都完全一致
+	 * </p>
+	 * @param count 抽奖次数
+	 * @return 奖品流
+	 */
+	public Stream<T> drawStream(long count) {
+		long seed;
+		if(random == null) {
+			seed = ThreadLocalRandom.current().nextLong();
+		} else {
+			synchronized (this) {
+				seed = random.nextLong();
+			}
+		}
+		return am.ints(count, seed).mapToObj(keyList::get);
+	}
+
+
 	public static void main(String[] args) {
 		RandomPool<String> pool = new RandomPool<>(MapUtils.of(
 				String.class, Double.class,
@@ -59,7 +98,26 @@ public class RandomPool<T> {
 			if("ssr".contentEquals(next)) {
 				System.out.println(next);
 			}
-			
+
+		}
+
+		/* 同一个种子,串行和并行模拟的结果一致 */
+		Map<String, Double> weights = MapUtils.of(
+				String.class, Double.class,
+				"ssr", 0.02d,
+				"sr", 0.08d,
+				"r", 0.5d,
+				"n", 0.4d
+				);
+		long count = 100_000_000L;
+		for(int round=0; round<2; round++) {
+			long start = System.nanoTime();
+			long serial = new RandomPool<>(weights, 42L).drawStream(count).filter("ssr"::equals).count();
+			long serialEnd = System.nanoTime();
+			long parallel = new RandomPool<>(weights, 42L).drawStream(count).parallel().filter("ssr"::equals).count();
+			long parallelEnd = System.nanoTime();
+			System.out.printf("ssr 串行 %d 次(%d ms), 并行 %d 次(%d ms)%n",
+					serial, (serialEnd - start) / 1_000_000, parallel, (parallelEnd - serialEnd) / 1_000_000);
 		}
 	}
 }
@@ -0,0 +1,394 @@
+package com.ag777.util.lang.random;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * 带权重的蓄水池抽样
+ * <p>
+ * 从长度未知的数据流中一次遍历抽取k个样本,每个样本被抽中的概率与权重成正比,内存只占用O(k)。
+ * 和{@link RandomPool}不同,不需要事先把全部权重放进内存<br>
+ * 不放回抽样:k个样本互不相同(按元素位置区分),算法为A-ExpJ(Efraimidis &amp; Spirakis, 2006),
+ * 每个元素的优先级为ln(u)/w,保留优先级最大的k个;通过指数跳跃直接算出下一个会进入蓄水池的位置,
+ * 中间的元素只需要累加权重,不消耗随机数<br>
+ * 有放回抽样:k个槽位各自独立地做容量为1的A-ExpJ,同一个元素可以出现多次<br>
+ * 两种方式都可以合并:各分区分别抽样后{@link #merge(WeightedReservoirSampler)},
+ * 结果与对整个数据流抽样同分布,可以配合{@link #collector(int, boolean, ToDoubleFunction)}并行使用<br>
+ * 非线程安全
+ * </p>
+ * <pre>
+ * List&lt;Log&gt; samples = logs.parallel().collect(
+ *     WeightedReservoirSampler.collector(1000, false, Log::getCost));
+ * </pre>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 元素类型
+ */
+public class WeightedReservoirSampler<T> {
+
+	private final int k;
+	private final boolean withReplacement;
+	private final SplittableRandom random;
+
+	/*
+	 * 不放回:keys/items是按优先级排列的小顶堆,堆顶为门槛,size为已放入个数
+	 * 有放回:keys/items/triggers按槽位存放,heap是按triggers排列的槽位小顶堆
+	 */
+	private final double[] keys;
+	private final Object[] items;
+	private final double[] triggers;
+	private final int[] heap;
+	private int size;
+	private double trigger;		//不放回时,累计权重达到该值的元素进入蓄水池
+	private double totalWeight;
+	private long count;
+
+	/**
+	 * @param k 样本个数
+	 * @param withReplacement 是否有放回
+	 */
+	public WeightedReservoirSampler(int k, boolean withReplacement) {
+		this(k, withReplacement, new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+	}
+
+	/**
+	 * 指定种子,对同一个数据流顺序抽样时结果可复现
+	 * @param k 样本个数
+	 * @param withReplacement 是否有放回
+	 * @param seed 种子
+	 */
+	public WeightedReservoirSampler(int k, boolean withReplacement, long seed) {
+		this(k, withReplacement, new SplittableRandom(seed));
+	}
+
+	private WeightedReservoirSampler(int k, boolean withReplacement, SplittableRandom random) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("样本个数必须大于0:" + k);
+		}
+		this.k = k;
+		this.withReplacement = withReplacement;
+		this.random = random;
+		keys = new double[k];
+		items = new Object[k];
+		triggers = withReplacement ? new double[k] : null;
+		heap = withReplacement ? new int[k] : null;
+	}
+
+	/**
+	 * 放入一个元素
+	 * @param item 元素
+	 * @param weight 权重,为0的元素不会被抽中
+	 */
+	public void add(T item, double weight) {
+		if (!(weight >= 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException("权重必须是非负有限数:" + weight);
+		}
+		count++;
+		if (weight == 0) {
+			return;
+		}
+		totalWeight += weight;
+		if (withReplacement) {
+			addWithReplacement(item, weight);
+		} else {
+			addWithoutReplacement(item, weight);
+		}
+	}
+
+	/**
+	 * 放入迭代器中的所有元素
+	 * @param iterator 迭代器
+	 * @param weigher 计算元素权重
+	 * @return this
+	 */
+	public WeightedReservoirSampler<T> addAll(Iterator<? extends T> iterator, ToDoubleFunction<? super T> weigher) {
+		while (iterator.hasNext()) {
+			T item = iterator.next();
+			add(item, weigher.applyAsDouble(item));
+		}
+		return this;
+	}
+
+	/**
+	 * 放入Spliterator中剩余的所有元素
+	 * @param spliterator spliterator
+	 * @param weigher 计算元素权重
+	 * @return this
+	 */
+	public WeightedReservoirSampler<T> addAll(Spliterator<? extends T> spliterator, ToDoubleFunction<? super T> weigher) {
+		spliterator.forEachRemaining(item -> add(item, weigher.applyAsDouble(item)));
+		return this;
+	}
+
+	/**
+	 * 顺序放入流中的所有元素,需要并行时使用{@link #collector(int, boolean, ToDoubleFunction)}
+	 * @param stream 流
+	 * @param weigher 计算元素权重
+	 * @return this
+	 */
+	public WeightedReservoirSampler<T> addAll(Stream<? extends T> stream, ToDoubleFunction<? super T> weigher) {
+		stream.sequential().forEach(item -> add(item, weigher.applyAsDouble(item)));
+		return this;
+	}
+
+	/**
+	 * 合并另一个分区的抽样状态,两者的样本个数和是否放回必须相同
+	 * <p>
+	 * 不放回时取两边优先级最大的k个,有放回时每个槽位取优先级较大的一边
+	 * </p>
+	 * @param other 另一个分区的抽样状态
+	 * @return this
+	 */
+	@SuppressWarnings("unchecked")
+	public WeightedReservoirSampler<T> merge(WeightedReservoirSampler<? extends T> other) {
+		if (other.k != k || other.withReplacement != withReplacement) {
+			throw new IllegalArgumentException("样本个数或是否放回不同,无法合并");
+		}
+		count += other.count;
+		if (other.size == 0) {
+			return this;
+		}
+		totalWeight += other.totalWeight;
+		if (withReplacement) {
+			if (size == 0) {
+				System.arraycopy(other.keys, 0, keys, 0, k);
+				System.arraycopy(other.items, 0, items, 0, k);
+				size = k;
+			} else {
+				for (int slot = 0; slot < k; slot++) {
+					if (other.keys[slot] > keys[slot]) {
+						keys[slot] = other.keys[slot];
+						items[slot] = other.items[slot];
+					}
+				}
+			}
+			//指数跳跃无记忆,按合并后的累计权重重新生成
+			for (int slot = 0; slot < k; slot++) {
+				triggers[slot] = totalWeight + jump(keys[slot]);
+				heap[slot] = slot;
+			}
+			for (int i = k / 2 - 1; i >= 0; i--) {
+				siftDownTrigger(i);
+			}
+		} else {
+			for (int i = 0; i < other.size; i++) {
+				offer(other.keys[i], (T) other.items[i]);
+			}
+			if (size == k) {
+				trigger = totalWeight + jump(keys[0]);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return 样本,元素个数少于k(不放回)或者没有正权重的元素时,样本个数会少于k
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getSamples() {
+		List<T> samples = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			samples.add((T) items[i]);
+		}
+		return samples;
+	}
+
+	/**
+	 * @return 已放入的元素个数(包括权重为0的)
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return 已放入元素的权重之和
+	 */
+	public double totalWeight() {
+		return totalWeight;
+	}
+
+	/**
+	 * 抽样收集器,并行流中各分区独立抽样后合并
+	 * @param k 样本个数
+	 * @param withReplacement 是否有放回
+	 * @param weigher 计算元素权重
+	 * @return 收集器
+	 */
+	public static <T> Collector<T, ?, List<T>> collector(int k, boolean withReplacement, ToDoubleFunction<? super T> weigher) {
+		return Collector.<T, WeightedReservoirSampler<T>, List<T>>of(
+				() -> new WeightedReservoirSampler<>(k, withReplacement),
+				(sampler, item) -> sampler.add(item, weigher.applyAsDouble(item)),
+				WeightedReservoirSampler::merge,
+				WeightedReservoirSampler::getSamples,
+				Collector.Characteristics.UNORDERED);
+	}
+
+	private void addWithoutReplacement(T item, double weight) {
+		if (size < k) {
+			offer(Math.log(uniform()) / weight, item);
+			if (size == k) {
+				trigger = totalWeight + jump(keys[0]);
+			}
+		} else if (totalWeight >= trigger) {
+			keys[0] = keyAbove(keys[0], weight);
+			items[0] = item;
+			siftDown(0);
+			trigger = totalWeight + jump(keys[0]);
+		}
+	}
+
+	private void addWithReplacement(T item, double weight) {
+		if (size == 0) {
+			for (int slot = 0; slot < k; slot++) {
+				keys[slot] = Math.log(uniform()) / weight;
+				items[slot] = item;
+				triggers[slot] = totalWeight + jump(keys[slot]);
+				heap[slot] = slot;
+			}
+			size = k;
+			for (int i = k / 2 - 1; i >= 0; i--) {
+				siftDownTrigger(i);
+			}
+			return;
+		}
+		while (triggers[heap[0]] <= totalWeight) {
+			int slot = heap[0];
+			keys[slot] = keyAbove(keys[slot], weight);
+			items[slot] = item;
+			triggers[slot] = totalWeight + jump(keys[slot]);
+			siftDownTrigger(0);
+		}
+	}
+
+	/**
+	 * 按优先级放入(不放回),未满直接放入,已满时替换掉门槛
+	 */
+	private void offer(double key, T item) {
+		if (size < k) {
+			int i = size++;
+			keys[i] = key;
+			items[i] = item;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (keys[parent] <= keys[i]) {
+					break;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+		} else if (key > keys[0]) {
+			keys[0] = key;
+			items[0] = item;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * 累计权重还要增加多少,才会出现优先级超过门槛的元素
+	 * @param threshold 门槛优先级(对数)
+	 */
+	private double jump(double threshold) {
+		return threshold < 0 ? Math.log(uniform()) / threshold : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * 已知优先级超过门槛时,按条件分布生成新的优先级:u在(T^w, 1)之间均匀分布
+	 */
+	private double keyAbove(double threshold, double weight) {
+		double t = Math.exp(threshold * weight);
+		double key = Math.log(t + random.nextDouble() * (1 - t)) / weight;
+		return Math.max(key, threshold);
+	}
+
+	/**
+	 * @return (0,1]之间的均匀随机数
+	 */
+	private double uniform() {
+		return 1.0 - random.nextDouble();
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= size) {
+				return;
+			}
+			int min = left + 1 < size && keys[left + 1] < keys[left] ? left + 1 : left;
+			if (keys[i] <= keys[min]) {
+				return;
+			}
+			swap(i, min);
+			i = min;
+		}
+	}
+
+	private void swap(int i, int j) {
+		double key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		Object item = items[i];
+		items[i] = items[j];
+		items[j] = item;
+	}
+
+	private void siftDownTrigger(int i) {
+		int slot = heap[i];
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= k) {
+				break;
+			}
+			int min = left + 1 < k && triggers[heap[left + 1]] < triggers[heap[left]] ? left + 1 : left;
+			if (triggers[slot] <= triggers[heap[min]]) {
+				break;
+			}
+			heap[i] = heap[min];
+			i = min;
+		}
+		heap[i] = slot;
+	}
+
+
+	public static void main(String[] args) {
+		/* 0~9的权重为1~10,有放回抽样时各元素出现次数应与权重成正比 */
+		int k = 55_000;
+		WeightedReservoirSampler<Integer> sampler = new WeightedReservoirSampler<>(k, true, 42L);
+		sampler.addAll(LongStream.range(0, 1_000_000).mapToObj(i -> (int) (i % 10)), i -> i + 1);
+		int[] counts = new int[10];
+		for (int i : sampler.getSamples()) {
+			counts[i]++;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			sb.append(i).append(':').append(counts[i]).append("(期望").append((i + 1) * k / 55).append(") ");
+		}
+		System.out.println(sb);
+
+		/* 1亿个元素,串行和并行的吞吐量 */
+		long n = 100_000_000L;
+		for (int round = 0; round < 2; round++) {	//第一轮预热
+			for (boolean withReplacement : new boolean[]{false, true}) {
+				long start = System.nanoTime();
+				WeightedReservoirSampler<Long> serial = new WeightedReservoirSampler<>(1000, withReplacement);
+				LongStream.range(0, n).forEach(i -> serial.add(i, (i & 1023) + 1));
+				long serialEnd = System.nanoTime();
+				List<Long> parallel = LongStream.range(0, n).boxed().parallel()
+						.collect(collector(1000, withReplacement, i -> (i & 1023) + 1));
+				long parallelEnd = System.nanoTime();
+				System.out.printf("%s: 串行 %.1f 百万个/秒, 并行 %.1f 百万个/秒, 样本%d个%n",
+						withReplacement ? "有放回" : "不放回",
+						n * 1000.0 / (serialEnd - start), n * 1000.0 / (parallelEnd - serialEnd),
+						parallel.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.ag777.util.lang.security;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * 已初始化Cipher的线程级缓存
+ * <p>
+ * Cipher.getInstance需要查找provider,占了短数据加解密的大部分耗时。
+ * Cipher在doFinal之后会回到init后的状态,因此同一个线程可以反复使用同一个已初始化的Cipher<br>
+ * 每个线程一个按访问顺序淘汰的LRU,键为(transformation,密钥类型,密钥字节,加密/解密,参数),
+ * Cipher不会跨线程共享<br>
+ * 以下情况不缓存,每次创建新的Cipher:
+ * <ul>
+ * <li>指定了SecureRandom(调用方需要控制随机源)</li>
+ * <li>GCM模式(同一个密钥和IV不能重复加密)</li>
+ * <li>参数不是IvParameterSpec(无法判断两个参数是否相同)</li>
+ * </ul>
+ * 缓存中保存了密钥,不再使用时可以调用{@link #clear()}清空当前线程的缓存
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+class CipherCache {
+
+	/* 每个线程最多缓存的Cipher个数 */
+	private static final int MAX_SIZE = 32;
+
+	private static final ThreadLocal<Map<CacheKey, Cipher>> CACHE = ThreadLocal.withInitial(() ->
+			new LinkedHashMap<CacheKey, Cipher>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<CacheKey, Cipher> eldest) {
+					return size() > MAX_SIZE;
+				}
+			});
+
+	private CipherCache() {}
+
+	/**
+	 * 根据密钥字节生成Key,只在缓存未命中时调用
+	 */
+	@FunctionalInterface
+	interface KeyLoader {
+		Key load() throws GeneralSecurityException;
+	}
+
+	/**
+	 * 获取已初始化的Cipher,只能在当前线程中使用,用完不需要归还
+	 * @param transformation 算法/模式/填充
+	 * @param keyType 密钥类型,用于区分相同字节的不同密钥,如"AES"、"RSA-public"
+	 * @param key 密钥字节
+	 * @param opmode Cipher.ENCRYPT_MODE 或者 Cipher.DECRYPT_MODE
+	 * @param params 参数,可以为null
+	 * @param random 随机源,不为null时不缓存
+	 * @param loader 生成Key
+	 * @return Cipher
+	 * @throws GeneralSecurityException 创建或初始化Cipher失败
+	 */
+	static Cipher get(String transformation, String keyType, byte[] key, int opmode, AlgorithmParameterSpec params, SecureRandom random, KeyLoader loader) throws GeneralSecurityException {
+		if (!cacheable(transformation, params, random)) {
+			return EncryptUtils.getCipher(loader.load(), transformation, opmode, params, random);
+		}
+		byte[] iv = params == null ? null : ((IvParameterSpec) params).getIV();
+		CacheKey cacheKey = new CacheKey(transformation, keyType, key, opmode, iv);
+		Map<CacheKey, Cipher> cache = CACHE.get();
+		Cipher cipher = cache.get(cacheKey);
+		if (cipher == null) {
+			cipher = EncryptUtils.getCipher(loader.load(), transformation, opmode, params, null);
+			cache.put(cacheKey.copy(), cipher);
+		}
+		return cipher;
+	}
+
+	/**
+	 * 使用缓存的Cipher加密或解密,出错时移除该Cipher,避免其处于未知状态
+	 */
+	static byte[] doFinal(String transformation, String keyType, byte[] key, int opmode, AlgorithmParameterSpec params, SecureRandom random, KeyLoader loader, byte[] input) throws GeneralSecurityException {
+		Cipher cipher = get(transformation, keyType, key, opmode, params, random, loader);
+		try {
+			return cipher.doFinal(input);
+		} catch (GeneralSecurityException | RuntimeException e) {
+			evict(cipher);
+			throw e;
+		}
+	}
+
+	/**
+	 * 清空当前线程的缓存
+	 */
+	static void clear() {
+		CACHE.remove();
+	}
+
+	/**
+	 * 从当前线程的缓存中移除该Cipher,使用{@link #get}取得的Cipher出错后调用
+	 */
+	static void evict(Cipher cipher) {
+		CACHE.get().values().removeIf(cached -> cached == cipher);
+	}
+
+	private static boolean cacheable(String transformation, AlgorithmParameterSpec params, SecureRandom random) {
+		if (random != null) {
+			return false;
+		}
+		if (params != null && params.getClass() != IvParameterSpec.class) {
+			return false;
+		}
+		return !transformation.toUpperCase().contains("GCM");
+	}
+
+	private static final class CacheKey {
+		private final String transformation;
+		private final String keyType;
+		private final byte[] key;
+		private final int opmode;
+		private final byte[] iv;
+		private final int hash;
+
+		private CacheKey(String transformation, String keyType, byte[] key, int opmode, byte[] iv) {
+			this.transformation = transformation;
+			this.keyType = keyType;
+			this.key = key;
+			this.opmode = opmode;
+			this.iv = iv;
+			int h = transformation.hashCode();
+			h = 31 * h + Objects.hashCode(keyType);
+			h = 31 * h + Arrays.hashCode(key);
+			h = 31 * h + opmode;
+			h = 31 * h + Arrays.hashCode(iv);
+			hash = h;
+		}
+
+		/**
+		 * 放入缓存前复制密钥,避免调用方修改数组后缓存错乱
+		 */
+		private CacheKey copy() {
+			return new CacheKey(transformation, keyType, key.clone(), opmode, iv);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return hash == other.hash
+					&& opmode == other.opmode
+					&& transformation.equals(other.transformation)
+					&& Objects.equals(keyType, other.keyType)
+					&& Arrays.equals(key, other.key)
+					&& Arrays.equals(iv, other.iv);
+		}
+	}
+}
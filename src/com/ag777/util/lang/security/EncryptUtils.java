@@ -1,15 +1,23 @@
 package com.ag777.util.lang.security;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -20,8 +28,12 @@ import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.digest.DigestUtils;
 
+import com.ag777.util.lang.convert.BHDConvertUtils;
 import com.ag777.util.lang.security.model.AES_CBC_NOPADDING;
+import com.ag777.util.lang.security.model.AES_GCM;
 import com.ag777.util.lang.security.model.AlgorithmType;
+import com.ag777.util.lang.security.model.DES;
+import com.ag777.util.lang.security.model.ThreeDES;
 
 /**
  * 有关加解密的工具类
@@ -33,9 +45,23 @@ import com.ag777.util.lang.security.model.AlgorithmType;
  * </ul>
  * 该包用于md5和sha1加密
  * </p>
+ * <p>
+ * [修改]encrypt/decrypt/en/decrypt(byte[]...)内部复用当前线程已初始化的Cipher(见CipherCache),
+ * 不再每次调用Cipher.getInstance;{@link #getCipher(byte[], String, String, int, AlgorithmParameterSpec, SecureRandom)}仍然返回新的Cipher
+ * </p>
+ * <p>
+ * [新增]流式加解密{@link #encrypt(InputStream, OutputStream, AlgorithmType, String)},按64KB分块处理,内存占用与数据大小无关,支持AES-GCM
+ * </p>
+ * <p>
+ * [新增]ByteBuffer加解密{@link #encrypt(ByteBuffer, ByteBuffer, AlgorithmType, byte[])},支持direct buffer和原地加解密,
+ * 不经过byte[]和Base64字符串
+ * </p>
+ * <p>
+ * [修改]base64编码改用BHDConvertUtils的查表实现,结果与commons-codec相同;解码仍使用commons-codec(忽略非法字符)
+ * </p>
  * 
  * @author ag777
- * @version create on 2018年06月29日,last modify at 2019年05月14日
+ * @version create on 2018年06月29日,last modify at 2026年10月18日
  */
 public class EncryptUtils {
 	
@@ -61,7 +87,7 @@ public class EncryptUtils {
 	 * @return 编码后的base 64 code
 	 */
 	public static String base64(byte[] bytes) {
-		return Base64.encodeBase64String(bytes);
+		return BHDConvertUtils.base64(bytes);
 	}
 	   
 	 /**
@@ -187,6 +213,7 @@ public class EncryptUtils {
      * @throws InvalidAlgorithmParameterException
      */
     public static String encrypt(String src, String key, AlgorithmType algorithmType) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException {
+    	checkNoIv(algorithmType);
     	return en(
     			algorithmType.preEn(src), 
     			key, 
@@ -299,6 +326,7 @@ public class EncryptUtils {
      * @throws InvalidAlgorithmParameterException
      */
     public static String decrypt(String src, String key, AlgorithmType algorithmType) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, InvalidAlgorithmParameterException {
+    	checkNoIv(algorithmType);
     	return algorithmType.afterDe(
     			de(
 	    			src, 
@@ -391,6 +419,169 @@ public class EncryptUtils {
 		return sb.toString();
 	}
     
+	/*===========================流式加解密===========================*/
+	
+	/**
+	 * 流式加密,按块处理,适合大文件
+	 * <p>
+	 * 普通模式的密文与一次性加密相同;NoPadding模式在末尾补\0到分组长度(解密后保留);
+	 * {@link AES_GCM}等需要随机向量的模式会把向量写在密文开头,并分块认证。
+	 * 不会关闭传入的流
+	 * </p>
+	 * @param in 明文
+	 * @param out 密文
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @throws IOException 读写失败
+	 * @throws GeneralSecurityException 密钥或者算法参数错误
+	 */
+	public static void encrypt(InputStream in, OutputStream out, AlgorithmType algorithmType, String key) throws IOException, GeneralSecurityException {
+		StreamCipher.encrypt(Channels.newChannel(in), Channels.newChannel(out), algorithmType, key.getBytes());
+	}
+	
+	/**
+	 * 流式解密,与{@link #encrypt(InputStream, OutputStream, AlgorithmType, String)}对应
+	 * <p>
+	 * GCM模式下每块校验通过后就会写出,抛出异常时已写出的内容需要丢弃
+	 * </p>
+	 * @param in 密文
+	 * @param out 明文
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @throws IOException 读写失败,或者密文被截断
+	 * @throws GeneralSecurityException 密钥错误,或者密文被篡改
+	 */
+	public static void decrypt(InputStream in, OutputStream out, AlgorithmType algorithmType, String key) throws IOException, GeneralSecurityException {
+		StreamCipher.decrypt(Channels.newChannel(in), Channels.newChannel(out), algorithmType, key.getBytes());
+	}
+	
+	/**
+	 * 文件加密,从in的当前位置读到末尾,写到out的当前位置
+	 * @param in 明文
+	 * @param out 密文
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @throws IOException 读写失败
+	 * @throws GeneralSecurityException 密钥或者算法参数错误
+	 * @see #encrypt(InputStream, OutputStream, AlgorithmType, String)
+	 */
+	public static void encrypt(FileChannel in, FileChannel out, AlgorithmType algorithmType, String key) throws IOException, GeneralSecurityException {
+		StreamCipher.encrypt(in, out, algorithmType, key.getBytes());
+	}
+	
+	/**
+	 * 文件解密,从in的当前位置读到末尾,写到out的当前位置
+	 * @param in 密文
+	 * @param out 明文
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @throws IOException 读写失败,或者密文被截断
+	 * @throws GeneralSecurityException 密钥错误,或者密文被篡改
+	 * @see #decrypt(InputStream, OutputStream, AlgorithmType, String)
+	 */
+	public static void decrypt(FileChannel in, FileChannel out, AlgorithmType algorithmType, String key) throws IOException, GeneralSecurityException {
+		StreamCipher.decrypt(in, out, algorithmType, key.getBytes());
+	}
+	
+	/*===========================ByteBuffer加解密===========================*/
+	
+	/**
+	 * 加密in的剩余部分写到out,不经过byte[]和字符串,支持direct buffer
+	 * <p>
+	 * 密文格式与{@link #encrypt(InputStream, OutputStream, AlgorithmType, String)}相同,两者可以互相解密。
+	 * 返回后in和out的position都后移,失败时两者的position不确定<br>
+	 * 除GCM等需要随机向量的模式外,in和out可以是同一块内存的两个duplicate(原地加密),见{@link #encryptInPlace(ByteBuffer, AlgorithmType, byte[])}
+	 * </p>
+	 * @param in 明文
+	 * @param out 密文,剩余空间不能少于{@link #maxOutputSize(int, AlgorithmType, boolean)}
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @return 写入out的字节数
+	 * @throws GeneralSecurityException 密钥或者算法参数错误,或者out空间不足(ShortBufferException)
+	 */
+	public static int encrypt(ByteBuffer in, ByteBuffer out, AlgorithmType algorithmType, byte[] key) throws GeneralSecurityException {
+		return StreamCipher.encrypt(in, out, algorithmType, key);
+	}
+	
+	/**
+	 * 解密in的剩余部分写到out,与{@link #encrypt(ByteBuffer, ByteBuffer, AlgorithmType, byte[])}对应
+	 * <p>
+	 * in和out可以是同一块内存的两个duplicate(原地解密),明文不会比密文长
+	 * </p>
+	 * @param in 密文
+	 * @param out 明文,剩余空间不能少于密文长度
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @return 写入out的字节数
+	 * @throws GeneralSecurityException 密钥错误,密文被篡改或截断,或者out空间不足
+	 */
+	public static int decrypt(ByteBuffer in, ByteBuffer out, AlgorithmType algorithmType, byte[] key) throws GeneralSecurityException {
+		return StreamCipher.decrypt(in, out, algorithmType, key);
+	}
+	
+	/**
+	 * 原地加密buffer中position到limit的内容
+	 * <p>
+	 * 密文从原position开始写回同一个buffer,返回后position不变,limit为密文末尾;
+	 * 填充会使密文最多比明文长一个分组,limit之后的容量需要足够。
+	 * GCM等需要随机向量的模式密文开头多出向量,不支持原地加密
+	 * </p>
+	 * @param buffer 明文,加密后为密文
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @return 密文字节数
+	 * @throws GeneralSecurityException 密钥或者算法参数错误,或者容量不足
+	 */
+	public static int encryptInPlace(ByteBuffer buffer, AlgorithmType algorithmType, byte[] key) throws GeneralSecurityException {
+		if(algorithmType.ivLength() > 0) {
+			throw new IllegalArgumentException(algorithmType.transformation()+"需要随机向量,不支持原地加密");
+		}
+		ByteBuffer in = buffer.duplicate();
+		ByteBuffer out = buffer.duplicate();
+		out.limit(out.capacity());
+		int length = StreamCipher.encrypt(in, out, algorithmType, key);
+		buffer.limit(buffer.position()+length);
+		return length;
+	}
+	
+	/**
+	 * 原地解密buffer中position到limit的内容,所有模式都支持
+	 * <p>
+	 * 明文从原position开始写回同一个buffer,返回后position不变,limit为明文末尾
+	 * </p>
+	 * @param buffer 密文,解密后为明文
+	 * @param algorithmType 算法
+	 * @param key 密钥
+	 * @return 明文字节数
+	 * @throws GeneralSecurityException 密钥错误,或者密文被篡改或截断
+	 */
+	public static int decryptInPlace(ByteBuffer buffer, AlgorithmType algorithmType, byte[] key) throws GeneralSecurityException {
+		ByteBuffer in = buffer.duplicate();
+		ByteBuffer out = buffer.duplicate();
+		int length = StreamCipher.decrypt(in, out, algorithmType, key);
+		buffer.limit(buffer.position()+length);
+		return length;
+	}
+	
+	/**
+	 * 计算ByteBuffer加解密需要的输出空间,用于预先分配buffer
+	 * @param length 输入字节数
+	 * @param algorithmType 算法
+	 * @param encrypt true为加密,false为解密
+	 * @return 输出字节数的上限
+	 * @throws GeneralSecurityException 算法不存在
+	 */
+	public static int maxOutputSize(int length, AlgorithmType algorithmType, boolean encrypt) throws GeneralSecurityException {
+		return StreamCipher.maxOutputSize(length, algorithmType, encrypt);
+	}
+	
+	/**
+	 * 清空当前线程缓存的Cipher(及其中的密钥)
+	 */
+	public static void clearCipherCache() {
+		CipherCache.clear();
+	}
+    
 	/*=============内部方法==================*/
 	/**
 	 * 字符串编码转换iso_8859_1=>utf-8
@@ -469,24 +660,20 @@ public class EncryptUtils {
      * @throws InvalidAlgorithmParameterException
      */
     private static byte[] toByte(byte[] bytes, byte[] key, String transformation, String algorithm, int opmode, AlgorithmParameterSpec params, SecureRandom random) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, InvalidAlgorithmParameterException {
-    	return toByte(bytes, getCipher(key, transformation, algorithm, opmode, params, random));
-    }
-	
-    /**
-     * 加密或解密
-     * @param bytes
-     * @param cipher
-     * @return
-     * @throws NoSuchAlgorithmException
-     * @throws NoSuchPaddingException
-     * @throws InvalidKeyException
-     * @throws IllegalBlockSizeException
-     * @throws BadPaddingException
-     */
-    private static byte[] toByte(byte[] bytes, Cipher cipher) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
-    	return cipher.doFinal(bytes);
+    	if(params == null && opmode == Cipher.ENCRYPT_MODE && transformation.toUpperCase().contains("/GCM/")) {
+    		//不传向量时由提供者随机生成,但向量不会保存到结果中,密文将无法解密
+    		throw new IllegalArgumentException(transformation+"需要随机向量,请使用流式或ByteBuffer加密方法");
+    	}
+    	try {
+			return CipherCache.doFinal(transformation, algorithm, key, opmode, params, random, 
+					()->getSecretKeySpec(key, algorithm), bytes);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException e) {
+			throw e;
+		} catch (GeneralSecurityException e) {	//SecretKeySpec不会抛出其它异常
+			throw new IllegalStateException(e);
+		}
     }
-    
+
     /**
      * 获取密匙Cipher[saɪfɚ]
      * @param key
@@ -524,12 +711,21 @@ public class EncryptUtils {
     	return c;
     }
     
+	/**
+	 * 字符串和字节数组的加解密不保存随机向量,GCM等需要随机向量的算法只能使用流式或ByteBuffer方法
+	 */
+	private static void checkNoIv(AlgorithmType algorithmType) {
+		if(algorithmType.ivLength() > 0) {
+			throw new IllegalArgumentException(algorithmType.transformation()+"需要随机向量,请使用流式或ByteBuffer加解密方法");
+		}
+	}
+	
 	private static  SecretKeySpec getSecretKeySpec(byte[] key, String algorithm) {
     	return new SecretKeySpec(key, algorithm);
     }
 	
 	
-	public static void main(String[] args) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, InvalidAlgorithmParameterException {
+	public static void main(String[] args) throws IOException, GeneralSecurityException {
 		AlgorithmType type = new AES_CBC_NOPADDING();
 		String key = "ssssaaa|ssssaaa|";
 		String src = "哈哈嗝~233";
@@ -542,5 +738,75 @@ public class EncryptUtils {
 		System.out.println(md5_32("123123"));
 		System.out.println(md5ByRL(src));
 		System.out.println(sha1("sdsad").length());
+		
+		/* 短数据加密:每次新建Cipher和复用缓存的耗时对比 */
+		byte[] keyBytes = key.getBytes();
+		byte[] token = padding("user:10086|expire:1767196800", 16).getBytes(StandardCharsets.UTF_8);
+		int n = 200_000;
+		for(int round=0; round<3; round++) {	//前两轮预热
+			long start = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				getCipher(keyBytes, type.transformation(), type.algorithm(), Cipher.ENCRYPT_MODE, type.params(), null).doFinal(token);
+			}
+			long uncached = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				en(token, keyBytes, type.transformation(), type.algorithm(), type.params(), null);
+			}
+			long cached = System.nanoTime();
+			System.out.printf("每次新建Cipher: %.0f ns/op, 复用缓存: %.0f ns/op%n", 
+					(double)(uncached-start)/n, (double)(cached-uncached)/n);
+		}
+		
+		/* 流式加解密的吞吐量 */
+		byte[] data = new byte[64*1024*1024+5];	//不是分组长度的整数倍
+		SecureRandomUtils.nextBytes(data);
+		AlgorithmType[] types = {type, new DES(), new ThreeDES(), new AES_GCM()};
+		String[] keys = {key, "12345678", "123456781234567812345678", key};
+		for(int i=0; i<types.length; i++) {
+			ByteArrayOutputStream encrypted = new ByteArrayOutputStream(data.length+1024);
+			long start = System.nanoTime();
+			encrypt(new ByteArrayInputStream(data), encrypted, types[i], keys[i]);
+			long encryptEnd = System.nanoTime();
+			ByteArrayOutputStream decrypted = new ByteArrayOutputStream(data.length+1024);
+			decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, types[i], keys[i]);
+			long decryptEnd = System.nanoTime();
+			byte[] result = decrypted.toByteArray();
+			boolean same = Arrays.equals(data, Arrays.copyOf(result, data.length));
+			System.out.printf("%s: 加密 %.0f MB/s, 解密 %.0f MB/s, 还原%s%n", types[i].transformation(),
+					data.length*1000.0/(encryptEnd-start), data.length*1000.0/(decryptEnd-encryptEnd), same?"一致":"不一致");
+		}
+		
+		/* 1KB报文:字符串+Base64往返与direct buffer原地加解密的耗时对比 */
+		byte[] payload = new byte[1024];
+		for(int i=0; i<payload.length; i++) {
+			payload[i] = (byte) ('a'+i%26);
+		}
+		String payloadStr = new String(payload, StandardCharsets.US_ASCII);
+		AlgorithmType cbc = new AES_CBC_NOPADDING();
+		ByteBuffer direct = ByteBuffer.allocateDirect(payload.length+maxOutputSize(payload.length, cbc, true));
+		n = 100_000;
+		for(int round=0; round<3; round++) {	//前两轮预热
+			long start = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				decrypt(encrypt(payloadStr, key, cbc), key, cbc);
+			}
+			long viaString = System.nanoTime();
+			for(int i=0; i<n; i++) {
+				direct.clear();
+				direct.put(payload).flip();
+				encryptInPlace(direct, cbc, keyBytes);
+				decryptInPlace(direct, cbc, keyBytes);
+			}
+			long viaBuffer = System.nanoTime();
+			System.out.printf("字符串+Base64: %.0f ns/op, ByteBuffer原地: %.0f ns/op%n", 
+					(double)(viaString-start)/n, (double)(viaBuffer-viaString)/n);
+		}
+		direct.clear();
+		direct.put(payload).flip();
+		encryptInPlace(direct, new AES_CBC_NOPADDING(), keyBytes);
+		ByteBuffer plain = ByteBuffer.allocateDirect(direct.remaining());
+		decrypt(direct, plain, cbc, keyBytes);
+		plain.flip();
+		System.out.println("ByteBuffer还原"+(plain.equals(ByteBuffer.wrap(payload))?"一致":"不一致"));
 	}
 }
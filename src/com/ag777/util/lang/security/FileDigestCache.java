@@ -0,0 +1,184 @@
+package com.ag777.util.lang.security;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 持久化的文件摘要缓存
+ * <p>
+ * 以(绝对路径,文件大小,修改时间)为键保存摘要,文件未修改时直接返回缓存结果而不读取文件;
+ * 计算期间文件被修改的结果不会放入缓存;修改时间精度为毫秒,同一毫秒内修改且大小不变的文件无法识别<br>
+ * 通过{@link #open(Path)}加载,{@link #save()}写回(先写临时文件再替换,中途失败不会损坏原缓存)<br>
+ * 线程安全,可以配合{@link FileDigestUtils#digestAll(java.util.Collection, int, FileDigestCache, String...)}并行使用
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+public class FileDigestCache {
+
+	/* 缓存文件魔数"FDC1" */
+	private static final int MAGIC = 0x46444331;
+
+	private final Path cacheFile;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private FileDigestCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * 加载缓存,缓存文件不存在时返回空缓存
+	 * @param cacheFile 缓存文件
+	 * @return 缓存
+	 * @throws IOException 缓存文件读取失败或者格式错误
+	 */
+	public static FileDigestCache open(Path cacheFile) throws IOException {
+		FileDigestCache cache = new FileDigestCache(cacheFile);
+		if (Files.exists(cacheFile)) {
+			cache.load();
+		}
+		return cache;
+	}
+
+	/**
+	 * 获取文件摘要,文件大小和修改时间与缓存一致且包含所需算法时不读取文件
+	 * @param file 文件
+	 * @param algorithms 摘要算法
+	 * @return 算法-摘要(小写十六进制),顺序与传入的算法相同
+	 * @throws IOException 读取失败
+	 */
+	public Map<String, String> get(Path file, String... algorithms) throws IOException {
+		String key = file.toAbsolutePath().normalize().toString();
+		BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+		long size = before.size();
+		long modified = before.lastModifiedTime().toMillis();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size == size && entry.modified == modified && entry.containsAll(algorithms)) {
+			return entry.select(algorithms);
+		}
+		Map<String, String> digests = FileDigestUtils.digest(file, algorithms);
+		BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+		if (after.size() == size && after.lastModifiedTime().toMillis() == modified) {
+			Map<String, String> merged = new LinkedHashMap<>();
+			if (entry != null && entry.size == size && entry.modified == modified) {
+				merged.putAll(entry.digests);
+			}
+			merged.putAll(digests);
+			entries.put(key, new Entry(size, modified, merged));
+		}
+		return digests;
+	}
+
+	/**
+	 * 移除已不存在的文件的缓存
+	 * @return 移除的个数
+	 */
+	public int prune() {
+		int before = entries.size();
+		entries.keySet().removeIf(path -> !Files.exists(Paths.get(path)));
+		return before - entries.size();
+	}
+
+	/**
+	 * @return 缓存的文件个数
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * 写回缓存文件
+	 * @throws IOException 写入失败
+	 */
+	public void save() throws IOException {
+		Path dir = cacheFile.toAbsolutePath().getParent();
+		if (dir != null) {
+			Files.createDirectories(dir);
+		}
+		Path temp = Files.createTempFile(dir, cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				Map<String, Entry> snapshot = new LinkedHashMap<>(entries);
+				out.writeInt(MAGIC);
+				out.writeInt(snapshot.size());
+				for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+					Entry entry = e.getValue();
+					out.writeUTF(e.getKey());
+					out.writeLong(entry.size);
+					out.writeLong(entry.modified);
+					out.writeByte(entry.digests.size());
+					for (Map.Entry<String, String> digest : entry.digests.entrySet()) {
+						out.writeUTF(digest.getKey());
+						out.writeUTF(digest.getValue());
+					}
+				}
+			}
+			Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("不是文件摘要缓存:" + cacheFile);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long modified = in.readLong();
+				int digestCount = in.readUnsignedByte();
+				Map<String, String> digests = new LinkedHashMap<>(digestCount * 2);
+				for (int j = 0; j < digestCount; j++) {
+					digests.put(in.readUTF(), in.readUTF());
+				}
+				entries.put(path, new Entry(size, modified, digests));
+			}
+		}
+	}
+
+	private static final class Entry {
+		private final long size;
+		private final long modified;
+		private final Map<String, String> digests;
+
+		private Entry(long size, long modified, Map<String, String> digests) {
+			this.size = size;
+			this.modified = modified;
+			this.digests = Collections.unmodifiableMap(digests);
+		}
+
+		private boolean containsAll(String[] algorithms) {
+			for (String algorithm : algorithms) {
+				if (!digests.containsKey(algorithm)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private Map<String, String> select(String[] algorithms) {
+			Map<String, String> result = new LinkedHashMap<>(algorithms.length * 2);
+			for (String algorithm : algorithms) {
+				result.put(algorithm, digests.get(algorithm));
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.ag777.util.lang.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ag777.util.lang.convert.BHDConvertUtils;
+
+/**
+ * 文件摘要工具类
+ * <p>
+ * 一次读取同时计算多种摘要(如MD5和SHA-1),不需要每种摘要各读一遍文件;
+ * 每个线程复用一个1MB的读缓冲区<br>
+ * 批量计算时在固定大小的线程池中并行,可以配合{@link FileDigestCache}跳过未修改的文件<br>
+ * 摘要结果为小写十六进制字符串,与EncryptUtils.md5_32的结果相同
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+public class FileDigestUtils {
+
+	public static final String MD5 = "MD5";
+	public static final String SHA1 = "SHA-1";
+	public static final String SHA256 = "SHA-256";
+
+	/* 读缓冲区大小 */
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+	private FileDigestUtils() {}
+
+	/**
+	 * 读取一遍输入流,同时计算多种摘要,不会关闭流
+	 * @param in 输入流
+	 * @param algorithms 摘要算法,如{@link #MD5},{@link #SHA1}
+	 * @return 算法-摘要(小写十六进制),顺序与传入的算法相同
+	 * @throws IOException 读取失败
+	 */
+	public static Map<String, String> digest(InputStream in, String... algorithms) throws IOException {
+		MessageDigest[] digests = newDigests(algorithms);
+		byte[] buffer = BUFFER.get().array();
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			for (MessageDigest digest : digests) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return toMap(algorithms, digests);
+	}
+
+	/**
+	 * 读取一遍文件,同时计算多种摘要
+	 * @param file 文件
+	 * @param algorithms 摘要算法,如{@link #MD5},{@link #SHA1}
+	 * @return 算法-摘要(小写十六进制),顺序与传入的算法相同
+	 * @throws IOException 读取失败
+	 */
+	public static Map<String, String> digest(Path file, String... algorithms) throws IOException {
+		MessageDigest[] digests = newDigests(algorithms);
+		ByteBuffer buffer = BUFFER.get();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (true) {
+				buffer.clear();
+				if (channel.read(buffer) == -1) {
+					break;
+				}
+				buffer.flip();
+				for (MessageDigest digest : digests) {
+					digest.update(buffer.array(), 0, buffer.limit());
+				}
+			}
+		}
+		return toMap(algorithms, digests);
+	}
+
+	/**
+	 * 并行计算多个文件的摘要
+	 * @param files 文件列表
+	 * @param parallelism 并行线程数
+	 * @param algorithms 摘要算法
+	 * @return 文件-(算法-摘要),顺序与传入的文件相同
+	 * @throws IOException 任意一个文件读取失败,其余文件的异常作为suppressed附加
+	 */
+	public static Map<Path, Map<String, String>> digestAll(Collection<Path> files, int parallelism, String... algorithms) throws IOException {
+		return digestAll(files, parallelism, null, algorithms);
+	}
+
+	/**
+	 * 并行计算多个文件的摘要,大小和修改时间未变的文件直接使用缓存中的结果
+	 * @param files 文件列表
+	 * @param parallelism 并行线程数
+	 * @param cache 摘要缓存,为null时不使用缓存
+	 * @param algorithms 摘要算法
+	 * @return 文件-(算法-摘要),顺序与传入的文件相同
+	 * @throws IOException 任意一个文件读取失败,其余文件的异常作为suppressed附加
+	 */
+	public static Map<Path, Map<String, String>> digestAll(Collection<Path> files, int parallelism, FileDigestCache cache, String... algorithms) throws IOException {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("并行线程数必须大于0:" + parallelism);
+		}
+		newDigests(algorithms);	//提前检查算法是否存在
+		AtomicInteger threadIndex = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(files.size(), 1)), r -> {
+			Thread thread = new Thread(r, "file-digest-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<Map<String, String>>> futures = new ArrayList<>(files.size());
+			for (Path file : files) {
+				futures.add(pool.submit(() -> cache == null ? digest(file, algorithms) : cache.get(file, algorithms)));
+			}
+			Map<Path, Map<String, String>> result = new LinkedHashMap<>(files.size() * 4 / 3 + 1);
+			IOException error = null;
+			int i = 0;
+			for (Path file : files) {
+				try {
+					result.put(file, futures.get(i++).get());
+				} catch (ExecutionException e) {
+					IOException cause = e.getCause() instanceof IOException
+							? (IOException) e.getCause()
+							: new IOException(file + "计算摘要失败", e.getCause());
+					if (error == null) {
+						error = cause;
+					} else {
+						error.addSuppressed(cause);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("计算摘要时被中断", e);
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param bytes 字节数组
+	 * @return 小写十六进制字符串
+	 */
+	static String hex(byte[] bytes) {
+		return BHDConvertUtils.bytes2Hex(bytes, true);
+	}
+
+	private static MessageDigest[] newDigests(String... algorithms) {
+		if (algorithms == null || algorithms.length == 0) {
+			throw new IllegalArgumentException("至少需要一种摘要算法");
+		}
+		MessageDigest[] digests = new MessageDigest[algorithms.length];
+		for (int i = 0; i < algorithms.length; i++) {
+			try {
+				digests[i] = MessageDigest.getInstance(algorithms[i]);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalArgumentException("不支持的摘要算法:" + algorithms[i], e);
+			}
+		}
+		return digests;
+	}
+
+	private static Map<String, String> toMap(String[] algorithms, MessageDigest[] digests) {
+		Map<String, String> result = new LinkedHashMap<>(algorithms.length * 2);
+		for (int i = 0; i < algorithms.length; i++) {
+			result.put(algorithms[i], hex(digests[i].digest()));
+		}
+		return result;
+	}
+
+
+	public static void main(String[] args) throws IOException {
+		/* 生成200个1MB的临时文件,对比分两次读取、一次读取、并行、使用缓存的耗时 */
+		Path dir = Files.createTempDirectory("digest");
+		List<Path> files = new ArrayList<>();
+		byte[] data = new byte[1024 * 1024];
+		for (int i = 0; i < 200; i++) {
+			SecureRandomUtils.nextBytes(data);
+			files.add(Files.write(dir.resolve(i + ".bin"), data));
+		}
+		Path cacheFile = dir.resolve("digest.cache");
+		try {
+			for (int round = 0; round < 2; round++) {	//第一轮预热
+				long start = System.nanoTime();
+				for (Path file : files) {
+					try (InputStream in = Files.newInputStream(file)) {
+						EncryptUtils.md5_32(in);
+					}
+					try (InputStream in = Files.newInputStream(file)) {
+						org.apache.commons.codec.digest.DigestUtils.sha1Hex(in);
+					}
+				}
+				long twoPass = System.nanoTime();
+				for (Path file : files) {
+					digest(file, MD5, SHA1);
+				}
+				long onePass = System.nanoTime();
+				digestAll(files, Runtime.getRuntime().availableProcessors(), MD5, SHA1);
+				long parallel = System.nanoTime();
+				FileDigestCache cache = FileDigestCache.open(cacheFile);
+				digestAll(files, 4, cache, MD5, SHA1);
+				cache.save();
+				long cached = System.nanoTime();
+				FileDigestCache.open(cacheFile).get(files.get(0), MD5, SHA1);	//重新加载缓存
+				System.out.printf("分两次读取 %d ms, 一次读取 %d ms, 并行 %d ms, 并行+缓存 %d ms%n",
+						(twoPass - start) / 1_000_000, (onePass - twoPass) / 1_000_000,
+						(parallel - onePass) / 1_000_000, (cached - parallel) / 1_000_000);
+			}
+		} finally {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+			Files.deleteIfExists(cacheFile);
+			Files.deleteIfExists(dir);
+		}
+	}
+}
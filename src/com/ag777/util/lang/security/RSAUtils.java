@@ -1,18 +1,35 @@
 package com.ag777.util.lang.security;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 
+import com.ag777.util.lang.security.model.AES_GCM;
+
 /**
  * RSA: 既能用于数据加密也能用于数字签名的算法
  * RSA算法原理如下：
@@ -23,6 +40,9 @@ import javax.crypto.Cipher;
     5.最终得到的N和e就是“公钥”，d就是“私钥”，发送方使用N去加密数据，接收方只有使用d才能解开数据内容
     基于大数计算，比DES要慢上几倍，通常只能用于加密少量数据或者加密密钥
     私钥加解密都很耗时，服务器要求解密效率高，客户端私钥加密，服务器公钥解密比较好一点
+ * [修改]KeyFactory按线程复用,解析后的公钥/私钥放入有上限的LRU缓存,Cipher复用当前线程已初始化的实例(见CipherCache)
+ * [新增]数字信封{@link #encryptEnvelope(byte[], byte[])}:每条消息随机生成AES密钥,正文用AES-GCM加密,
+ *     只用RSA(OAEP,SHA-256)加密AES密钥,耗时与数据长度线性相关,大数据时代替#PART#分段加密
  * Created by Song on 2017/2/22.
  */
 public class RSAUtils {
@@ -36,6 +56,23 @@ public class RSAUtils {
     public static final int DEFAULT_KEY_SIZE = 2048; //秘钥默认长度
     public static final byte[] DEFAULT_SPLIT = "#PART#".getBytes();    // 当要加密的内容超过bufferSize，则采用partSplit进行分块加密
     public static final int DEFAULT_BUFFERSIZE = (DEFAULT_KEY_SIZE / 8) - 11; // 当前秘钥支持加密的最大字节数
+    private static final int KEY_CACHE_SIZE = 64; // 解析后的密钥最多缓存个数
+    private static final int ENVELOPE_MAGIC = 0x5245; // 数字信封魔数"RE"
+    private static final int ENVELOPE_VERSION = 2; // 数字信封格式版本,2开始AES密钥改用OAEP加密
+    private static final String ENVELOPE_KEY_PADDING = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding"; // 加密AES密钥的填充方式,JDK默认MGF1使用SHA-1
+    private static final int ENVELOPE_KEY_LENGTH = 16; // 数字信封中AES密钥字节数
+
+    // KeyFactory不保证线程安全,每个线程一个
+    private static final ThreadLocal<KeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance(RSA);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    // 公钥/私钥对象不可变,可以跨线程共享
+    private static final Map<ByteBuffer, PublicKey> PUBLIC_KEYS = lruCache();
+    private static final Map<ByteBuffer, PrivateKey> PRIVATE_KEYS = lruCache();
 
 
     private RSAUtils() {
@@ -69,20 +106,45 @@ public class RSAUtils {
     }
 
 
+    /**
+     * 解析X509编码的公钥,结果会被缓存
+     * @param publicKey 公钥字节
+     * @return 公钥
+     * @throws InvalidKeySpecException 公钥格式错误
+     */
+    public static PublicKey getPublicKey(byte[] publicKey) throws InvalidKeySpecException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(publicKey);
+        PublicKey key = PUBLIC_KEYS.get(cacheKey);
+        if (key == null) {
+            key = KEY_FACTORY.get().generatePublic(new X509EncodedKeySpec(publicKey));
+            PUBLIC_KEYS.put(ByteBuffer.wrap(publicKey.clone()), key);
+        }
+        return key;
+    }
+
+    /**
+     * 解析PKCS8编码的私钥,结果会被缓存
+     * @param privateKey 私钥字节
+     * @return 私钥
+     * @throws InvalidKeySpecException 私钥格式错误
+     */
+    public static PrivateKey getPrivateKey(byte[] privateKey) throws InvalidKeySpecException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(privateKey);
+        PrivateKey key = PRIVATE_KEYS.get(cacheKey);
+        if (key == null) {
+            key = KEY_FACTORY.get().generatePrivate(new PKCS8EncodedKeySpec(privateKey));
+            PRIVATE_KEYS.put(ByteBuffer.wrap(privateKey.clone()), key);
+        }
+        return key;
+    }
+
     /**
      * 公钥对字符串进行加密
      * @param data 原文
      */
     public static byte[] encryptByPublicKey(byte[] data, byte[] publicKey) throws Exception {
-
-        // 得到公钥
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKey);
-        KeyFactory kf = KeyFactory.getInstance(RSA);
-        PublicKey keyPublic = kf.generatePublic(keySpec);
-        // 加密数据
-        Cipher cp = Cipher.getInstance(ECB_PKCS1_PADDING);
-        cp.init(Cipher.ENCRYPT_MODE, keyPublic);
-        return cp.doFinal(data);
+        return CipherCache.doFinal(ECB_PKCS1_PADDING, "RSA-public", publicKey, Cipher.ENCRYPT_MODE, null, null,
+                () -> getPublicKey(publicKey), data);
     }
 
     /**
@@ -93,15 +155,8 @@ public class RSAUtils {
      * @return byte[] 加密数据
      */
     public static byte[] encryptByPrivateKey(byte[] data, byte[] privateKey) throws Exception {
-
-        // 得到私钥
-        PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKey);
-        KeyFactory kf = KeyFactory.getInstance(RSA);
-        PrivateKey keyPrivate = kf.generatePrivate(keySpec);
-        // 数据加密
-        Cipher cipher = Cipher.getInstance(ECB_PKCS1_PADDING);
-        cipher.init(Cipher.ENCRYPT_MODE, keyPrivate);
-        return cipher.doFinal(data);
+        return CipherCache.doFinal(ECB_PKCS1_PADDING, "RSA-private", privateKey, Cipher.ENCRYPT_MODE, null, null,
+                () -> getPrivateKey(privateKey), data);
     }
 
     /**
@@ -112,31 +167,105 @@ public class RSAUtils {
      * @return byte[] 解密数据
      */
     public static byte[] decryptByPublicKey(byte[] data, byte[] publicKey) throws Exception {
-
-        // 得到公钥
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKey);
-        KeyFactory kf = KeyFactory.getInstance(RSA);
-        PublicKey keyPublic = kf.generatePublic(keySpec);
-        // 数据解密
-        Cipher cipher = Cipher.getInstance(ECB_PKCS1_PADDING);
-        cipher.init(Cipher.DECRYPT_MODE, keyPublic);
-        return cipher.doFinal(data);
+        return CipherCache.doFinal(ECB_PKCS1_PADDING, "RSA-public", publicKey, Cipher.DECRYPT_MODE, null, null,
+                () -> getPublicKey(publicKey), data);
     }
 
     /**
      * 使用私钥进行解密
      */
     public static byte[] decryptByPrivateKey(byte[] encrypted, byte[] privateKey) throws Exception {
+        return CipherCache.doFinal(ECB_PKCS1_PADDING, "RSA-private", privateKey, Cipher.DECRYPT_MODE, null, null,
+                () -> getPrivateKey(privateKey), encrypted);
+    }
+
+    /**
+     * 公钥加密为数字信封
+     * <p>
+     * 格式(整数均为大端):
+     * <pre>
+     * 魔数"RE"(2字节) | 版本(1字节) | RSA加密后的AES密钥长度(2字节) | RSA(OAEP)加密后的AES密钥 | AES-GCM密文
+     * </pre>
+     * AES-GCM密文为随机向量加分块认证的记录,见EncryptUtils.encrypt(InputStream, OutputStream, AlgorithmType, String)
+     * </p>
+     * @param data 原文
+     * @param publicKey X509编码的公钥
+     * @return 数字信封
+     */
+    public static byte[] encryptEnvelope(byte[] data, byte[] publicKey) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + data.length / 2048 + 512);
+        encryptEnvelope(new ByteArrayInputStream(data), out, publicKey);
+        return out.toByteArray();
+    }
+
+    /**
+     * 私钥解密数字信封
+     * @param envelope {@link #encryptEnvelope(byte[], byte[])}的结果
+     * @param privateKey PKCS8编码的私钥
+     * @return 原文
+     */
+    public static byte[] decryptEnvelope(byte[] envelope, byte[] privateKey) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(envelope.length);
+        decryptEnvelope(new ByteArrayInputStream(envelope), out, privateKey);
+        return out.toByteArray();
+    }
 
-        // 得到私钥
-        PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKey);
-        KeyFactory kf = KeyFactory.getInstance(RSA);
-        PrivateKey keyPrivate = kf.generatePrivate(keySpec);
-        // 解密数据
-        Cipher cp = Cipher.getInstance(ECB_PKCS1_PADDING);
-        cp.init(Cipher.DECRYPT_MODE, keyPrivate);
-        byte[] arr = cp.doFinal(encrypted);
-        return arr;
+    /**
+     * 公钥流式加密为数字信封,内存占用与数据大小无关,不会关闭传入的流
+     * @param in 原文
+     * @param out 数字信封
+     * @param publicKey X509编码的公钥
+     */
+    public static void encryptEnvelope(InputStream in, OutputStream out, byte[] publicKey) throws IOException, GeneralSecurityException {
+        byte[] key = new byte[ENVELOPE_KEY_LENGTH];
+        SecureRandomUtils.nextBytes(key);
+        try {
+            byte[] wrapped = CipherCache.doFinal(ENVELOPE_KEY_PADDING, "RSA-public", publicKey, Cipher.ENCRYPT_MODE, null, null,
+                    () -> getPublicKey(publicKey), key);
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeShort(ENVELOPE_MAGIC);
+            header.writeByte(ENVELOPE_VERSION);
+            header.writeShort(wrapped.length);
+            header.write(wrapped);
+            header.flush();
+            StreamCipher.encrypt(Channels.newChannel(in), Channels.newChannel(out), new AES_GCM(), key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * 私钥流式解密数字信封,不会关闭传入的流
+     * <p>
+     * 每块校验通过后就会写出,抛出异常时已写出的内容需要丢弃
+     * </p>
+     * @param in 数字信封
+     * @param out 原文
+     * @param privateKey PKCS8编码的私钥
+     * @throws IOException 读写失败,或者数字信封被截断
+     * @throws GeneralSecurityException 格式错误,私钥不匹配,或者数据被篡改
+     */
+    public static void decryptEnvelope(InputStream in, OutputStream out, byte[] privateKey) throws IOException, GeneralSecurityException {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readUnsignedShort() != ENVELOPE_MAGIC) {
+            throw new GeneralSecurityException("不是数字信封格式");
+        }
+        int version = header.readUnsignedByte();
+        if (version != ENVELOPE_VERSION) {
+            throw new GeneralSecurityException("不支持的数字信封版本:" + version);
+        }
+        byte[] wrapped = new byte[header.readUnsignedShort()];
+        header.readFully(wrapped);
+        byte[] key = CipherCache.doFinal(ENVELOPE_KEY_PADDING, "RSA-private", privateKey, Cipher.DECRYPT_MODE, null, null,
+                () -> getPrivateKey(privateKey), wrapped);
+        try {
+            if (key.length != ENVELOPE_KEY_LENGTH) {
+                throw new GeneralSecurityException("数字信封中的密钥长度错误:" + key.length);
+            }
+            StreamCipher.decrypt(Channels.newChannel(in), Channels.newChannel(out), new AES_GCM(), key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
     }
 
     /**
@@ -374,11 +503,60 @@ public class RSAUtils {
         return bytes;
     }
     
+    private static <V> Map<ByteBuffer, V> lruCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<ByteBuffer, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, V> eldest) {
+                return size() > KEY_CACHE_SIZE;
+            }
+        });
+    }
+    
     public static void main(String[] args) throws Exception {
 		KeyPair pair = generateRSAKeyPair(2048);
 		byte[] en = encryptByPublicKey("啊哈哈".getBytes(), pair.getPublic().getEncoded());
 		System.out.println(new String(en));;
 		byte[] src = decryptByPrivateKey(en, pair.getPrivate().getEncoded());
 		System.out.println(new String(src));
+		
+		/* 公钥加密:每次解析密钥、新建Cipher和使用缓存的耗时对比 */
+		byte[] publicKey = pair.getPublic().getEncoded();
+		byte[] data = "token".getBytes();
+		int n = 20_000;
+		for (int round = 0; round < 3; round++) {	//前两轮预热
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				PublicKey key = KeyFactory.getInstance(RSA).generatePublic(new X509EncodedKeySpec(publicKey));
+				Cipher cipher = Cipher.getInstance(ECB_PKCS1_PADDING);
+				cipher.init(Cipher.ENCRYPT_MODE, key);
+				cipher.doFinal(data);
+			}
+			long uncached = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				encryptByPublicKey(data, publicKey);
+			}
+			long cached = System.nanoTime();
+			System.out.printf("不缓存: %.1f us/op, 缓存: %.1f us/op%n",
+					(uncached - start) / 1000.0 / n, (cached - uncached) / 1000.0 / n);
+		}
+
+		/* 1MB数据:#PART#分段加密和数字信封的耗时对比 */
+		byte[] privateKey = pair.getPrivate().getEncoded();
+		byte[] large = new byte[1024 * 1024];
+		SecureRandomUtils.nextBytes(large);
+		for (int round = 0; round < 2; round++) {	//第一轮预热
+			long start = System.nanoTime();
+			byte[] split = encryptByPublicKeyForSpilt(large, publicKey);
+			byte[] splitResult = decryptByPrivateKeyForSpilt(split, privateKey);
+			long splitEnd = System.nanoTime();
+			byte[] envelope = encryptEnvelope(large, publicKey);
+			byte[] envelopeResult = decryptEnvelope(envelope, privateKey);
+			long envelopeEnd = System.nanoTime();
+			System.out.printf("分段加密: %d ms(%d字节,还原%s), 数字信封: %d ms(%d字节,还原%s)%n",
+					(splitEnd - start) / 1_000_000, split.length, Arrays.equals(large, splitResult),
+					(envelopeEnd - splitEnd) / 1_000_000, envelope.length, Arrays.equals(large, envelopeResult));
+		}
 	}
 }
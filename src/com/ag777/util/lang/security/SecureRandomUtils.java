@@ -1,16 +1,26 @@
 package com.ag777.util.lang.security;
 
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 随机工具类。
  * <p>
  * 		采用JDK8带来的SecurityRandomUtils来生成随机数
  * </p>
- * 
+ * <p>
+ * [修改]由一个共享实例改为分段:按cpu核数创建多个SHA1PRNG实例,线程第一次使用时轮流分配到其中一个,
+ * 之后固定使用该实例,线程数不超过分段数时互不竞争SecureRandom内部的锁<br>
+ * 每个实例输出{@link #RESEED_BYTES}字节或者超过{@link #RESEED_INTERVAL_MS}毫秒后,从系统熵源(/dev/urandom等)补充种子
+ * </p>
+ *
  * @author ag777
- * @version create on 2018年06月29日,last modify at 2018年07月18日
+ * @version create on 2018年06月29日,last modify at 2026年10月18日
  */
 public class SecureRandomUtils {
 
@@ -21,30 +31,108 @@ public class SecureRandomUtils {
 		另外，实际上SHA1PRNG的性能将近要比NativePRNG的性能好一倍，synchronized的代码少了一半，所以没有特别重的安全需要，尽量使用SHA1PRNG算法生成随机数
 	 */
 	private static final String DEFAULT_ALGORITHM = "SHA1PRNG";
-	private static SecureRandom secureRandom;
-	
+	/* 每个实例输出多少字节后补充种子 */
+	public static final long RESEED_BYTES = 1L << 20;
+	/* 每个实例最长多久补充一次种子 */
+	public static final long RESEED_INTERVAL_MS = 10 * 60 * 1000L;
+	/* 补充种子的字节数 */
+	private static final int SEED_BYTES = 32;
+	/* 批量生成时的中间缓冲区大小 */
+	private static final int SCRATCH_SIZE = 1024;
+
+	private static final Stripe[] STRIPES = createStripes();
+	private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+	private static final ThreadLocal<Stripe> CURRENT = ThreadLocal.withInitial(
+			() -> STRIPES[NEXT_STRIPE.getAndIncrement() & (STRIPES.length - 1)]);
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+	// 最后一段不足SCRATCH_SIZE时使用的缓冲区,长度与上次相同时复用
+	private static final ThreadLocal<byte[][]> TAIL = ThreadLocal.withInitial(() -> new byte[1][]);
+	// 补充种子用的熵源,使用系统默认实现(Linux下读取/dev/urandom,不会阻塞)
+	private static volatile SecureRandom seeder;
+
+	/**
+	 * 获取当前线程对应的SecureRandom
+	 * <p>
+	 * 返回的实例线程安全,但直接使用时输出的字节不计入补充种子的统计,大量生成时建议使用本类的方法
+	 * </p>
+	 * @return
+	 */
 	public static SecureRandom getSecureRandom() {
-		if(secureRandom == null) {
-			synchronized (SecureRandomUtils.class) {
-				if(secureRandom == null) {
-					try {
-						secureRandom = SecureRandom.getInstance(DEFAULT_ALGORITHM);
-					} catch (NoSuchAlgorithmException e) {
-						throw new RuntimeException(e);
-					}
-					
-				}
+		return current();
+	}
+
+	/**
+	 * 生成随机字节填满数组
+	 * @param bytes
+	 */
+	public static void nextBytes(byte[] bytes) {
+		Stripe stripe = CURRENT.get();
+		stripe.random.nextBytes(bytes);
+		stripe.generated(bytes.length);
+	}
+
+	/**
+	 * 生成随机字节填满buffer的剩余空间,支持direct buffer,生成后position移到limit
+	 * @param buffer
+	 */
+	public static void nextBytes(ByteBuffer buffer) {
+		Stripe stripe = CURRENT.get();
+		int total = buffer.remaining();
+		if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.limit() == buffer.array().length) {
+			stripe.random.nextBytes(buffer.array());
+			buffer.position(buffer.limit());
+		} else {
+			while (buffer.hasRemaining()) {
+				byte[] chunk = scratch(Math.min(SCRATCH_SIZE, buffer.remaining()));
+				stripe.random.nextBytes(chunk);
+				buffer.put(chunk);
+				//随机数已交出,不在线程缓冲区中留存
+				Arrays.fill(chunk, (byte) 0);
 			}
 		}
-		return secureRandom;
+		stripe.generated(total);
 	}
-	
+
+	/**
+	 * 生成随机long填满数组
+	 * @param longs
+	 */
+	public static void nextLongs(long[] longs) {
+		Stripe stripe = CURRENT.get();
+		int perBatch = SCRATCH_SIZE / 8;
+		for (int offset = 0; offset < longs.length; offset += perBatch) {
+			int count = Math.min(perBatch, longs.length - offset);
+			byte[] chunk = scratch(count * 8);
+			stripe.random.nextBytes(chunk);
+			ByteBuffer.wrap(chunk).asLongBuffer().get(longs, offset, count);
+			Arrays.fill(chunk, (byte) 0);
+		}
+		stripe.generated(8L * longs.length);
+	}
+
+	/**
+	 * 获取当前线程长度正好为length的缓冲区,只生成需要的字节数,生成的字节数即为统计的字节数
+	 * @param length 不超过SCRATCH_SIZE
+	 * @return
+	 */
+	private static byte[] scratch(int length) {
+		if (length == SCRATCH_SIZE) {
+			return SCRATCH.get();
+		}
+		byte[][] holder = TAIL.get();
+		if (holder[0] == null || holder[0].length != length) {
+			holder[0] = new byte[length];
+		}
+		return holder[0];
+	}
+
 	/**
 	 * 生成指定区间[min,max)的int型数据,支持正数和负数
 	 * <p>
 	 * 最小值必须不比最大值大
+	 * [修改]改为均匀分布,结果不会等于max(min和max相同时除外)
 	 * </p>
-	 * 
+	 *
 	 * @param min
 	 * @param max
 	 * @return
@@ -55,17 +143,129 @@ public class SecureRandomUtils {
 		}
 		if(min == max) {	//两个数相同，顺便可以避免两个数同时为0的情况
 			return min;
-		} else if(min>=0) {	//两个数均为正数
-			return getSecureRandom().nextInt(max)%(max-min+1)+min;
-		} else if(max<=0) {	//两个数均为负数
-			int temp = max;
-			max = -min;
-			min = -temp;
-			return -(getSecureRandom().nextInt(max)%(max-min+1)+min)-1;	//-1是为了满足区间左闭右开
-		} else {	//最小值比0小，最大值比0大
-			int total = max-min;
-			return getSecureRandom().nextInt(total)+min;
 		}
+		SecureRandom random = current();
+		long range = (long) max - min;
+		if(range <= Integer.MAX_VALUE) {
+			return min + random.nextInt((int) range);
+		}
+		//区间超过int范围,拒绝采样
+		int r;
+		do {
+			r = random.nextInt();
+		} while(r < min || r >= max);
+		return r;
+	}
+
+	/**
+	 * 当前线程的分段,顺便检查是否需要补充种子
+	 */
+	private static SecureRandom current() {
+		Stripe stripe = CURRENT.get();
+		stripe.generated(0);
+		return stripe.random;
+	}
+
+	private static Stripe[] createStripes() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int size = 1;
+		while(size < cpus * 2 && size < 64) {
+			size <<= 1;
+		}
+		Stripe[] stripes = new Stripe[size];
+		for(int i=0; i<size; i++) {
+			stripes[i] = new Stripe();
+		}
+		return stripes;
+	}
+
+	private static SecureRandom seeder() {
+		if(seeder == null) {
+			synchronized (SecureRandomUtils.class) {
+				if(seeder == null) {
+					seeder = new SecureRandom();
+				}
+			}
+		}
+		return seeder;
+	}
+
+	/**
+	 * 一个SecureRandom及其输出统计
+	 */
+	private static final class Stripe {
+		private final SecureRandom random;
+		// 统计可能被同一分段的多个线程同时更新,丢失少量计数只会让补充种子稍晚一些
+		private long generated;
+		private long lastSeeded;
+
+		private Stripe() {
+			try {
+				random = SecureRandom.getInstance(DEFAULT_ALGORITHM);
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+			random.nextBytes(new byte[1]);	//首次调用时自动播种,避免之后的setSeed成为唯一种子
+			lastSeeded = System.currentTimeMillis();
+		}
+
+		private void generated(long bytes) {
+			generated += bytes;
+			if(generated >= RESEED_BYTES || System.currentTimeMillis() - lastSeeded >= RESEED_INTERVAL_MS) {
+				generated = 0;
+				lastSeeded = System.currentTimeMillis();
+				byte[] seed = new byte[SEED_BYTES];
+				seeder().nextBytes(seed);
+				random.setSeed(seed);	//SHA1PRNG的setSeed是补充而不是替换原有种子
+			}
+		}
+	}
+
+
+	/**
+	 * 1~32个线程生成32字节令牌的吞吐量,对比所有线程共用一个SecureRandom
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		SecureRandom shared;
+		try {
+			shared = SecureRandom.getInstance(DEFAULT_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		long durationMs = 500;
+		for(int threads = 1; threads <= 32; threads <<= 1) {
+			double sharedRate = run(threads, durationMs, () -> shared.nextBytes(new byte[32]));
+			double stripedRate = run(threads, durationMs, () -> nextBytes(new byte[32]));
+			System.out.printf("%2d线程: 共用实例 %.2f 百万次/秒, 分段 %.2f 百万次/秒%n", threads, sharedRate, stripedRate);
+		}
+	}
+
+	private static double run(int threads, long durationMs, Runnable task) throws InterruptedException {
+		LongAdder count = new LongAdder();
+		CountDownLatch start = new CountDownLatch(1);
+		long[] deadline = new long[1];
+		Thread[] list = new Thread[threads];
+		for(int t=0; t<threads; t++) {
+			list[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long n = 0;
+				while(System.nanoTime() < deadline[0]) {
+					task.run();
+					n++;
+				}
+				count.add(n);
+			});
+			list[t].start();
+		}
+		deadline[0] = System.nanoTime() + durationMs * 1_000_000;
+		start.countDown();
+		for(Thread thread : list) {
+			thread.join();
+		}
+		return count.sum() / (durationMs * 1000.0);
 	}
-	
 }
@@ -0,0 +1,311 @@
+package com.ag777.util.lang.security;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.ag777.util.lang.security.model.AlgorithmType;
+
+/**
+ * 分块流式加解密,内存占用固定,与数据大小无关
+ * <p>
+ * 普通模式:密文与一次性加密的结果相同;NoPadding模式在最后一块末尾补\0到分组长度,解密后保留补齐的\0<br>
+ * GCM等带随机向量的模式({@link AlgorithmType#ivLength()}大于0):
+ * <pre>
+ * [随机向量][记录0][记录1]...[最后一条记录]
+ * </pre>
+ * 每条记录是{@link #CHUNK_SIZE}字节明文单独加密的结果(含认证标签),
+ * 向量为随机向量的末8字节异或记录序号,附加数据为是否最后一条记录;
+ * 最后一条记录的明文少于{@link #CHUNK_SIZE}(可以为空),因此记录被调换、删除或者密文被截断都会解密失败<br>
+ * 注意:GCM解密时每条记录校验通过后就会写出,校验失败抛出异常时,已写出的内容需要由调用方丢弃
+ * </p>
+ * <p>
+ * ByteBuffer版本的格式与流式相同,两者可以互相解密;直接在buffer上调用Cipher,支持direct buffer,
+ * 不经过中间数组(NoPadding模式补齐的最后一个分组除外)
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+final class StreamCipher {
+
+	/* 每次处理的明文字节数,是所有分组长度的整数倍 */
+	static final int CHUNK_SIZE = 64 * 1024;
+
+	private StreamCipher() {}
+
+	static void encrypt(ReadableByteChannel in, WritableByteChannel out, AlgorithmType type, byte[] key) throws IOException, GeneralSecurityException {
+		Key secretKey = new SecretKeySpec(key, type.algorithm());
+		if (type.ivLength() > 0) {
+			byte[] iv = new byte[type.ivLength()];
+			SecureRandomUtils.nextBytes(iv);
+			writeFully(out, ByteBuffer.wrap(iv));
+			Cipher cipher = Cipher.getInstance(type.transformation());
+			ByteBuffer plain = ByteBuffer.allocate(CHUNK_SIZE);
+			ByteBuffer encrypted = null;
+			for (long counter = 0; ; counter++) {
+				plain.clear();
+				boolean last = fill(in, plain);
+				plain.flip();
+				cipher.init(Cipher.ENCRYPT_MODE, secretKey, type.params(nonce(iv, counter)));
+				cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+				encrypted = ensure(encrypted, cipher.getOutputSize(plain.remaining()));
+				cipher.doFinal(plain, encrypted);
+				encrypted.flip();
+				writeFully(out, encrypted);
+				if (last) {
+					return;
+				}
+			}
+		}
+		Cipher cipher = EncryptUtils.getCipher(secretKey, type.transformation(), Cipher.ENCRYPT_MODE, type.params(), type.random());
+		boolean zeroPadding = isNoPadding(type.transformation()) && cipher.getBlockSize() > 0;
+		transform(in, out, cipher, zeroPadding);
+	}
+
+	static void decrypt(ReadableByteChannel in, WritableByteChannel out, AlgorithmType type, byte[] key) throws IOException, GeneralSecurityException {
+		Key secretKey = new SecretKeySpec(key, type.algorithm());
+		if (type.ivLength() > 0) {
+			ByteBuffer ivBuffer = ByteBuffer.allocate(type.ivLength());
+			if (fill(in, ivBuffer)) {
+				throw new EOFException("密文不完整,缺少向量");
+			}
+			byte[] iv = ivBuffer.array();
+			Cipher cipher = Cipher.getInstance(type.transformation());
+			ByteBuffer encrypted = null;
+			ByteBuffer plain = ByteBuffer.allocate(CHUNK_SIZE);
+			int tagLength = 0;
+			for (long counter = 0; ; counter++) {
+				cipher.init(Cipher.DECRYPT_MODE, secretKey, type.params(nonce(iv, counter)));
+				if (encrypted == null) {	//记录长度 = 明文块长度 + 认证标签长度
+					tagLength = CHUNK_SIZE - cipher.getOutputSize(CHUNK_SIZE);
+					encrypted = ByteBuffer.allocate(CHUNK_SIZE + tagLength);
+				}
+				encrypted.clear();
+				boolean last = fill(in, encrypted);
+				encrypted.flip();
+				if (last && encrypted.remaining() < tagLength) {
+					throw new EOFException("密文被截断");
+				}
+				cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+				plain = ensure(plain, cipher.getOutputSize(encrypted.remaining()));
+				cipher.doFinal(encrypted, plain);
+				plain.flip();
+				writeFully(out, plain);
+				if (last) {
+					return;
+				}
+			}
+		}
+		Cipher cipher = EncryptUtils.getCipher(secretKey, type.transformation(), Cipher.DECRYPT_MODE, type.params(), type.random());
+		transform(in, out, cipher, false);
+	}
+
+	/**
+	 * 加密in的剩余部分写到out,两者的position都会后移
+	 * @return 写入out的字节数
+	 */
+	static int encrypt(ByteBuffer in, ByteBuffer out, AlgorithmType type, byte[] key) throws GeneralSecurityException {
+		int start = out.position();
+		int required = maxOutputSize(in.remaining(), type, true);
+		if (out.remaining() < required) {
+			throw new ShortBufferException("输出空间不足,需要" + required + "字节");
+		}
+		if (type.ivLength() > 0) {
+			byte[] iv = new byte[type.ivLength()];
+			SecureRandomUtils.nextBytes(iv);
+			out.put(iv);
+			Key secretKey = new SecretKeySpec(key, type.algorithm());
+			Cipher cipher = Cipher.getInstance(type.transformation());
+			ByteBuffer chunk = in.duplicate();
+			for (long counter = 0; ; counter++) {
+				int length = Math.min(CHUNK_SIZE, in.remaining());
+				boolean last = length < CHUNK_SIZE;
+				chunk.limit(in.position() + length);
+				cipher.init(Cipher.ENCRYPT_MODE, secretKey, type.params(nonce(iv, counter)));
+				cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+				cipher.doFinal(chunk, out);
+				in.position(chunk.position());
+				if (last) {
+					return out.position() - start;
+				}
+			}
+		}
+		Cipher cipher = cachedCipher(type, key, Cipher.ENCRYPT_MODE);
+		try {
+			int blockSize = cipher.getBlockSize();
+			int remainder = isNoPadding(type.transformation()) && blockSize > 0 ? in.remaining() % blockSize : 0;
+			if (remainder == 0) {
+				cipher.doFinal(in, out);
+			} else {	//对齐的部分直接加密,剩下的不足一个分组,补\0后加密
+				ByteBuffer aligned = in.duplicate();
+				aligned.limit(in.limit() - remainder);
+				cipher.update(aligned, out);
+				byte[] tail = new byte[blockSize];
+				in.position(aligned.position());
+				in.get(tail, 0, remainder);
+				cipher.doFinal(ByteBuffer.wrap(tail), out);
+			}
+		} catch (GeneralSecurityException | RuntimeException e) {
+			CipherCache.evict(cipher);
+			throw e;
+		}
+		return out.position() - start;
+	}
+
+	/**
+	 * 解密in的剩余部分写到out,两者的position都会后移
+	 * @return 写入out的字节数
+	 */
+	static int decrypt(ByteBuffer in, ByteBuffer out, AlgorithmType type, byte[] key) throws GeneralSecurityException {
+		int start = out.position();
+		if (type.ivLength() > 0) {
+			if (in.remaining() < type.ivLength()) {
+				throw new AEADBadTagException("密文不完整,缺少向量");
+			}
+			byte[] iv = new byte[type.ivLength()];
+			in.get(iv);
+			Key secretKey = new SecretKeySpec(key, type.algorithm());
+			Cipher cipher = Cipher.getInstance(type.transformation());
+			ByteBuffer record = in.duplicate();
+			int tagLength = -1;
+			for (long counter = 0; ; counter++) {
+				cipher.init(Cipher.DECRYPT_MODE, secretKey, type.params(nonce(iv, counter)));
+				if (tagLength < 0) {
+					tagLength = CHUNK_SIZE - cipher.getOutputSize(CHUNK_SIZE);
+				}
+				int length = Math.min(CHUNK_SIZE + tagLength, in.remaining());
+				boolean last = length < CHUNK_SIZE + tagLength;
+				if (length < tagLength) {
+					throw new AEADBadTagException("密文被截断");
+				}
+				record.limit(in.position() + length);
+				cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+				cipher.doFinal(record, out);
+				in.position(record.position());
+				if (last) {
+					return out.position() - start;
+				}
+			}
+		}
+		Cipher cipher = cachedCipher(type, key, Cipher.DECRYPT_MODE);
+		try {
+			cipher.doFinal(in, out);
+		} catch (GeneralSecurityException | RuntimeException e) {
+			CipherCache.evict(cipher);
+			throw e;
+		}
+		return out.position() - start;
+	}
+
+	/**
+	 * 处理length字节的输入最多需要的输出空间
+	 * @param length 输入字节数
+	 * @param type 算法
+	 * @param encrypt 是否加密
+	 * @return 输出字节数的上限
+	 */
+	static int maxOutputSize(int length, AlgorithmType type, boolean encrypt) throws GeneralSecurityException {
+		if (!encrypt) {
+			return length;
+		}
+		if (type.ivLength() > 0) {	//向量 + 明文 + 每条记录一个认证标签
+			AlgorithmParameterSpec params = type.params(new byte[type.ivLength()]);
+			int tagLength = params instanceof GCMParameterSpec ? ((GCMParameterSpec) params).getTLen() / 8 : 16;
+			return type.ivLength() + length + (length / CHUNK_SIZE + 1) * tagLength;
+		}
+		//填充或者补\0最多增加一个分组
+		return length + Math.max(Cipher.getInstance(type.transformation()).getBlockSize(), 0);
+	}
+
+	private static Cipher cachedCipher(AlgorithmType type, byte[] key, int opmode) throws GeneralSecurityException {
+		return CipherCache.get(type.transformation(), type.algorithm(), key, opmode, type.params(), type.random(),
+				() -> new SecretKeySpec(key, type.algorithm()));
+	}
+
+	/**
+	 * 不带随机向量的模式:逐块update,最后doFinal
+	 */
+	private static void transform(ReadableByteChannel in, WritableByteChannel out, Cipher cipher, boolean zeroPadding) throws IOException, GeneralSecurityException {
+		ByteBuffer input = ByteBuffer.allocate(CHUNK_SIZE);
+		ByteBuffer output = null;
+		while (true) {
+			input.clear();
+			boolean last = fill(in, input);
+			if (last && zeroPadding) {
+				int blockSize = cipher.getBlockSize();
+				int remainder = input.position() % blockSize;
+				if (remainder != 0) {
+					//CHUNK_SIZE是分组长度的整数倍,补齐后不会超出容量
+					input.put(new byte[blockSize - remainder]);
+				}
+			}
+			input.flip();
+			output = ensure(output, cipher.getOutputSize(input.remaining()));
+			if (last) {
+				cipher.doFinal(input, output);
+			} else {
+				cipher.update(input, output);
+			}
+			output.flip();
+			writeFully(out, output);
+			if (last) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 随机向量的末8字节异或记录序号
+	 */
+	private static byte[] nonce(byte[] iv, long counter) {
+		byte[] nonce = iv.clone();
+		for (int i = 0; i < 8 && i < nonce.length; i++) {
+			nonce[nonce.length - 1 - i] ^= (byte) (counter >>> (8 * i));
+		}
+		return nonce;
+	}
+
+	/**
+	 * 读满buffer
+	 * @return 是否读到了末尾(buffer没有读满)
+	 */
+	private static boolean fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer) < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static ByteBuffer ensure(ByteBuffer buffer, int size) {
+		if (buffer == null || buffer.capacity() < size) {
+			return ByteBuffer.allocate(size);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	private static boolean isNoPadding(String transformation) {
+		String upper = transformation.toUpperCase();
+		return upper.endsWith("/NOPADDING") && !upper.contains("/GCM/") && !upper.contains("/CTR/");
+	}
+}
@@ -0,0 +1,57 @@
+package com.ag777.util.lang.security.model;
+
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * 加密算法 AES/GCM/NoPadding
+ * <p>
+ * 带认证的加密,密文被篡改时解密会失败。每次加密都需要新的随机向量,
+ * 只支持流式加解密:EncryptUtils.encrypt(InputStream, OutputStream, AlgorithmType, String)
+ * </p>
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+public class AES_GCM extends AlgorithmType {
+	
+	/* 认证标签位数 */
+	public static final int TAG_BITS = 128;
+	
+	private final int keyLength;
+	
+	public AES_GCM() {
+		this(16);
+	}
+	
+	/**
+	 * @param keyLength 密钥字节数,16/24/32
+	 */
+	public AES_GCM(int keyLength) {
+		if(keyLength != 16 && keyLength != 24 && keyLength != 32) {
+			throw new IllegalArgumentException("密钥字节数只能是16/24/32:"+keyLength);
+		}
+		this.keyLength = keyLength;
+	}
+	
+	@Override
+	public Integer keyLength() {
+		return keyLength;
+	}
+	@Override
+	public String transformation() {
+		return "AES/GCM/NoPadding";
+	}
+	@Override
+	public String algorithm() {
+		return "AES";
+	}
+	@Override
+	public int ivLength() {
+		return 12;
+	}
+	@Override
+	public AlgorithmParameterSpec params(byte[] iv) {
+		return new GCMParameterSpec(TAG_BITS, iv);
+	}
+}
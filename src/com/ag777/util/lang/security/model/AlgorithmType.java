@@ -7,7 +7,7 @@ import java.security.spec.AlgorithmParameterSpec;
  * 算法基础类
  * 
  * @author ag777
- * @version create on 2018年06月29日,last modify at 2019年05月14日
+ * @version create on 2018年06月29日,last modify at 2026年10月18日
  */
 public abstract class AlgorithmType {
 	/**
@@ -33,6 +33,23 @@ public abstract class AlgorithmType {
 	public AlgorithmParameterSpec params() {
 		return null;
 	}
+	/**
+	 * 每次加密随机生成的向量长度,大于0时流式加密会生成随机向量并写在密文开头
+	 * @return 向量字节数,0代表使用{@link #params()}中的固定参数
+	 */
+	public int ivLength() {
+		return 0;
+	}
+	
+	/**
+	 * 根据随机向量生成算法参数,{@link #ivLength()}大于0时使用
+	 * @param iv 向量
+	 * @return
+	 */
+	public AlgorithmParameterSpec params(byte[] iv) {
+		return params();
+	}
+	
 	/**
 	 * 一个随机源,参与加密
 	 * @return
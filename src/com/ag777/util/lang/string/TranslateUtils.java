@@ -1,8 +1,23 @@
 package com.ag777.util.lang.string;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.ag777.util.gson.GsonUtils;
 import com.ag777.util.http.HttpEasy;
 import com.ag777.util.lang.StringUtils;
@@ -14,13 +29,31 @@ import com.ag777.util.lang.string.model.ApiTranslatePojo;
  * <p>
  * 调用的是百度翻译
  * </p>
+ * <p>
+ * [修改]译文缓存在{@link TranslationMemory}中(默认内存LRU,可以通过{@link #setMemory(TranslationMemory)}换成持久化的);
+ * 批量翻译{@link #translateAll(String, String, Collection)}把多条原文以换行拼接后一次请求;
+ * 同时进行的请求数受信号量限制;接口地址可以通过{@link #setBaseUrl(String)}修改(如指向本地的测试服务)
+ * </p>
  * 
  * @author ag777
- * @version create on 2017年10月16日,last modify at 2018年03月30日
+ * @version create on 2017年10月16日,last modify at 2026年10月18日
  */
 public class TranslateUtils {
 
-	private static final String BASEURL = "http://fanyi.baidu.com/transapi";
+	public static final String DEFAULT_BASEURL = "http://fanyi.baidu.com/transapi";
+	/* 每次请求最多包含的原文条数 */
+	private static final int BATCH_SIZE = 50;
+	/* 每次请求的原文最多字符数(请求为GET,避免url过长) */
+	private static final int BATCH_CHARS = 2000;
+	/* 默认内存缓存条数 */
+	private static final int DEFAULT_MEMORY_SIZE = 50_000;
+	/* 默认同时进行的请求数 */
+	private static final int DEFAULT_MAX_REQUESTS = 4;
+	
+	private static volatile String baseUrl = DEFAULT_BASEURL;
+	private static volatile TranslationMemory memory = TranslationMemory.inMemory(DEFAULT_MEMORY_SIZE);
+	private static volatile int maxRequests = DEFAULT_MAX_REQUESTS;
+	private static volatile Semaphore requestPermits = new Semaphore(DEFAULT_MAX_REQUESTS);
 	
 	public static enum Language {
 		CHINESE {
@@ -39,6 +72,44 @@ public class TranslateUtils {
 	
 	private TranslateUtils() {}
 	
+	/**
+	 * 修改接口地址
+	 * @param url 接口地址,为null时恢复为{@link #DEFAULT_BASEURL}
+	 */
+	public static void setBaseUrl(String url) {
+		baseUrl = url == null ? DEFAULT_BASEURL : url;
+	}
+	
+	/**
+	 * 替换翻译记忆,如换成持久化的{@link TranslationMemory#open(java.nio.file.Path, int)};需要由调用方在合适的时候save
+	 * @param translationMemory 翻译记忆,不能为null
+	 */
+	public static void setMemory(TranslationMemory translationMemory) {
+		if(translationMemory == null) {
+			throw new IllegalArgumentException("翻译记忆不能为null");
+		}
+		memory = translationMemory;
+	}
+	
+	/**
+	 * @return 当前使用的翻译记忆
+	 */
+	public static TranslationMemory getMemory() {
+		return memory;
+	}
+	
+	/**
+	 * 修改同时进行的请求数上限(所有线程共享),已经在等待的请求仍按原来的上限
+	 * @param max 上限
+	 */
+	public static void setMaxConcurrentRequests(int max) {
+		if(max <= 0) {
+			throw new IllegalArgumentException("请求数上限必须大于0:"+max);
+		}
+		maxRequests = max;
+		requestPermits = new Semaphore(max);
+	}
+	
 	/**
 	 * 英译汉
 	 * @param source
@@ -71,20 +142,175 @@ public class TranslateUtils {
 		if(StringUtils.isBlank(source)) {
 			return Optional.of("");
 		}
-		
-        Optional<String> json=HttpEasy.get(BASEURL, getParams(from.toString(), to.toString(), source), null);
-        if(json.isPresent()) {
-        	ApiTranslatePojo translateMode=GsonUtils.get().fromJson(json.get(), ApiTranslatePojo.class);
-            
-            if(translateMode!=null&&translateMode.getData()!=null&&translateMode.getData().size()==1)
-            {
-                return Optional.ofNullable(translateMode.getData().get(0).getDst());
-            }
-        } else {
-        	throw new IOException("请求失败");
-        }
-	            
-	    return Optional.empty();
+		TranslationMemory tm = memory;
+		String cached = tm.get(from, to, source);
+		if(cached != null) {
+			return Optional.of(cached);
+		}
+		String translation = request(from, to, Collections.singletonList(source)).get(0);
+		if(translation != null) {
+			tm.put(from, to, source, translation);
+		}
+		return Optional.ofNullable(translation);
+	}
+	
+	/**
+	 * 批量翻译
+	 * <p>
+	 * 先查翻译记忆,剩下的按每次最多{@value #BATCH_SIZE}条、{@value #BATCH_CHARS}个字符分批,
+	 * 以换行拼接后请求(接口按行返回译文);包含换行的原文单独请求。
+	 * 各批并行发出,同时进行的请求数不超过{@link #setMaxConcurrentRequests(int)}的设置
+	 * </p>
+	 * @param from 源语言
+	 * @param to 目标语言
+	 * @param sources 原文,重复的只翻译一次
+	 * @return 原文-译文,顺序与传入的原文相同;翻译失败(接口没有返回结果)的原文不在其中,空白的原文译文为""
+	 * @throws IOException 请求失败,其余批次的异常作为suppressed附加
+	 */
+	public static Map<String, String> translateAll(String from, String to, Collection<String> sources) throws IOException {
+		TranslationMemory tm = memory;
+		Map<String, String> result = new LinkedHashMap<>();
+		List<String> misses = new ArrayList<>();
+		for(String source : new LinkedHashSet<>(sources)) {
+			if(source == null) {
+				continue;
+			}
+			if(StringUtils.isBlank(source)) {
+				result.put(source, "");
+				continue;
+			}
+			String cached = tm.get(from, to, source);
+			result.put(source, cached);	//先占位,保证顺序
+			if(cached == null) {
+				misses.add(source);
+			}
+		}
+		if(!misses.isEmpty()) {
+			List<List<String>> batches = batches(misses);
+			AtomicInteger threadIndex = new AtomicInteger();
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(batches.size(), maxRequests), r -> {
+				Thread thread = new Thread(r, "translate-" + threadIndex.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			try {
+				List<Future<List<String>>> futures = new ArrayList<>(batches.size());
+				for(List<String> batch : batches) {
+					futures.add(pool.submit(() -> request(from, to, batch)));
+				}
+				IOException error = null;
+				for(int i=0; i<batches.size(); i++) {
+					try {
+						List<String> translations = futures.get(i).get();
+						List<String> batch = batches.get(i);
+						for(int j=0; j<batch.size(); j++) {
+							if(translations.get(j) != null) {
+								tm.put(from, to, batch.get(j), translations.get(j));
+								result.put(batch.get(j), translations.get(j));
+							}
+						}
+					} catch (ExecutionException e) {
+						IOException cause = e.getCause() instanceof IOException
+								? (IOException) e.getCause()
+								: new IOException("翻译失败", e.getCause());
+						if(error == null) {
+							error = cause;
+						} else {
+							error.addSuppressed(cause);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("翻译时被中断");
+					}
+				}
+				if(error != null) {
+					throw error;
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		result.values().removeIf(Objects::isNull);
+		return result;
+	}
+	
+	/**
+	 * 按条数和字符数分批,包含换行的原文单独一批
+	 */
+	private static List<List<String>> batches(List<String> sources) {
+		List<List<String>> batches = new ArrayList<>();
+		List<String> current = new ArrayList<>();
+		int chars = 0;
+		for(String source : sources) {
+			if(source.indexOf('\n') >= 0 || source.indexOf('\r') >= 0) {
+				batches.add(Collections.singletonList(source));
+				continue;
+			}
+			if(!current.isEmpty() && (current.size() >= BATCH_SIZE || chars + source.length() > BATCH_CHARS)) {
+				batches.add(current);
+				current = new ArrayList<>();
+				chars = 0;
+			}
+			current.add(source);
+			chars += source.length() + 1;
+		}
+		if(!current.isEmpty()) {
+			batches.add(current);
+		}
+		return batches;
+	}
+	
+	/**
+	 * 请求接口,多条原文以换行拼接
+	 * @return 与原文一一对应的译文,接口没有返回结果的为null
+	 * @throws IOException 请求失败
+	 */
+	private static List<String> request(String from, String to, List<String> sources) throws IOException {
+		Semaphore permits = requestPermits;
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("等待请求时被中断");
+		}
+		Optional<String> json;
+		try {
+			json = HttpEasy.get(baseUrl, getParams(from, to, String.join("\n", sources)), null);
+		} finally {
+			permits.release();
+		}
+		if(!json.isPresent()) {
+			throw new IOException("请求失败");
+		}
+		ApiTranslatePojo translateMode=GsonUtils.get().fromJson(json.get(), ApiTranslatePojo.class);
+		List<ApiTranslatePojo.Data> data = translateMode == null ? null : translateMode.getData();
+		List<String> translations = new ArrayList<>(sources.size());
+		if(data != null && data.size() == sources.size()) {
+			for(ApiTranslatePojo.Data item : data) {
+				translations.add(item.getDst());
+			}
+		} else if(sources.size() == 1) {	//包含换行的原文,接口按行返回,拼接回去
+			translations.add(data == null || data.isEmpty() ? null : joinLines(data));
+		} else {	//条数对不上(如接口合并或拆分了行),逐条重新请求
+			for(String source : sources) {
+				translations.add(request(from, to, Collections.singletonList(source)).get(0));
+			}
+		}
+		return translations;
+	}
+	
+	private static String joinLines(List<ApiTranslatePojo.Data> data) {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<data.size(); i++) {
+			if(data.get(i).getDst() == null) {
+				return null;
+			}
+			if(i > 0) {
+				sb.append('\n');
+			}
+			sb.append(data.get(i).getDst());
+		}
+		return sb.toString();
 	}
 	
 	private static Map<String, Object> getParams(String from, String to, String source) {
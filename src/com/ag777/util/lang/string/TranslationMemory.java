@@ -0,0 +1,201 @@
+package com.ag777.util.lang.string;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 翻译记忆,以(源语言,目标语言,原文)为键缓存译文
+ * <p>
+ * 内存中为按访问顺序淘汰的LRU;通过{@link #open(Path, int)}创建时可以持久化到文件,
+ * {@link #save()}写回(先写临时文件再替换,中途失败不会损坏原文件)<br>
+ * 线程安全
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+public class TranslationMemory {
+
+	/* 文件魔数"TRM1" */
+	private static final int MAGIC = 0x54524d31;
+
+	private final Path file;
+	private final Map<Key, String> entries;
+
+	private TranslationMemory(int maxSize, Path file) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("缓存条数必须大于0:" + maxSize);
+		}
+		this.file = file;
+		this.entries = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * 只在内存中缓存
+	 * @param maxSize 最多缓存的条数
+	 * @return
+	 */
+	public static TranslationMemory inMemory(int maxSize) {
+		return new TranslationMemory(maxSize, null);
+	}
+
+	/**
+	 * 加载持久化的翻译记忆,文件不存在时返回空的翻译记忆
+	 * @param file 文件
+	 * @param maxSize 最多缓存的条数
+	 * @return
+	 * @throws IOException 文件读取失败或者格式错误
+	 */
+	public static TranslationMemory open(Path file, int maxSize) throws IOException {
+		TranslationMemory memory = new TranslationMemory(maxSize, file);
+		if (Files.exists(file)) {
+			memory.load();
+		}
+		return memory;
+	}
+
+	/**
+	 * @param from 源语言
+	 * @param to 目标语言
+	 * @param text 原文
+	 * @return 译文,没有缓存时返回null
+	 */
+	public synchronized String get(String from, String to, String text) {
+		return entries.get(new Key(from, to, text));
+	}
+
+	/**
+	 * @param from 源语言
+	 * @param to 目标语言
+	 * @param text 原文
+	 * @param translation 译文
+	 */
+	public synchronized void put(String from, String to, String text, String translation) {
+		entries.put(new Key(from, to, text), translation);
+	}
+
+	/**
+	 * @return 缓存的条数
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * 清空缓存,不会修改文件
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * 写回文件,只在内存中缓存时不做任何事
+	 * @throws IOException 写入失败
+	 */
+	public void save() throws IOException {
+		if (file == null) {
+			return;
+		}
+		List<Map.Entry<Key, String>> snapshot;
+		synchronized (this) {
+			snapshot = new ArrayList<>(entries.entrySet());
+		}
+		Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) {
+			Files.createDirectories(dir);
+		}
+		Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(snapshot.size());
+				for (Map.Entry<Key, String> entry : snapshot) {	//按访问顺序写出,加载后淘汰顺序不变
+					Key key = entry.getKey();
+					writeString(out, key.from);
+					writeString(out, key.to);
+					writeString(out, key.text);
+					writeString(out, entry.getValue());
+				}
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("不是翻译记忆文件:" + file);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				Key key = new Key(readString(in), readString(in), readString(in));
+				entries.put(key, readString(in));
+			}
+		}
+	}
+
+	/**
+	 * 写出字符串,不使用writeUTF,原文可以超过64KB
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final class Key {
+		private final String from;
+		private final String to;
+		private final String text;
+
+		private Key(String from, String to, String text) {
+			this.from = from;
+			this.to = to;
+			this.text = text;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(from, to, text);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return from.equals(other.from) && to.equals(other.to) && text.equals(other.text);
+		}
+	}
+}
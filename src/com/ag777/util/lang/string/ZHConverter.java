@@ -5,7 +5,23 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -13,13 +29,40 @@ import java.util.Properties;
  * <p>
  * 开源库https://github.com/rookiefly/java-zhconverter
  * </p>
+ * <p>
+ * [修改]字典在加载时编译为不可变的字符trie,按最长匹配转换(原实现最多只能匹配两个字的词);
+ * 转换过程不加锁,每个字符不产生新对象,可以被多个线程同时使用
+ * </p>
+ * <p>
+ * [新增]流式转换{@link #convert(Reader, Writer)},内存占用固定;
+ * 并行转换{@link #convert(Reader, Writer, int)}在不属于任何词的字符之后切分,结果与单线程相同
+ * </p>
  * 
  * @author rookiefly
- * @version create on 2017年10月13日,last modify at 2018年02月07日
+ * @version create on 2017年10月13日,last modify at 2026年10月18日
  */
 public class ZHConverter {
 
-    private Properties charMap = new Properties();
+    private final Properties charMap = new Properties();
+    /* trie的字段都是final,实例通过final字段语义安全发布,不依赖getInstance的加锁 */
+    /* 首字符直接定位到第一层节点,-1为不在字典中 */
+    private final int[] rootIndex;
+    /* 节点i的字符,子节点为[childStart[i], childEnd[i]),按字符排序 */
+    private final char[] labels;
+    private final int[] childStart;
+    private final int[] childEnd;
+    /* 节点i对应的转换结果为values中[valueStart[i], valueStart[i]+valueLength[i]),valueLength为-1代表不是词尾 */
+    private final int[] valueStart;
+    private final int[] valueLength;
+    private final char[] values;
+    private final int maxKeyLength;
+    /* 出现在任意一个词中的字符,65536位 */
+    private final long[] keyChars;
+
+    /* 流式转换的缓冲区字符数 */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    /* 并行转换时每块的字符数 */
+    private static final int PARALLEL_BLOCK_SIZE = 1024 * 1024;
 
     public static final int TRADITIONAL = 0;
     public static final int SIMPLIFIED = 1;
@@ -75,6 +118,16 @@ public class ZHConverter {
                 }
             }
         }
+        Trie trie = compile(charMap);
+        rootIndex = trie.rootIndex;
+        labels = trie.labels;
+        childStart = trie.childStart;
+        childEnd = trie.childEnd;
+        valueStart = trie.valueStart;
+        valueLength = trie.valueLength;
+        values = trie.values;
+        maxKeyLength = trie.maxKeyLength;
+        keyChars = trie.keyChars;
     }
 
     /**
@@ -100,45 +153,355 @@ public class ZHConverter {
     	if(in == null) {
     		return null;
     	}
-        StringBuilder outString = new StringBuilder();
-        StringBuilder stackString = new StringBuilder();
+    	char[] chars = in.toCharArray();
+        StringBuilder outString = new StringBuilder(chars.length);
+        convert(chars, 0, chars.length, outString);
+        return outString.toString();
+    }
 
-        for (int i = 0; i < in.length(); i++) {
+    /**
+     * 按最长匹配转换src中[offset, offset+length)的字符,结果追加到out
+     *
+     * @param src 源字符
+     * @param offset 起始位置
+     * @param length 字符数
+     * @param out 转换结果
+     */
+    public void convert(char[] src, int offset, int length, StringBuilder out) {
+        convert(src, offset, offset + length, offset + length, out);
+    }
 
-            char c = in.charAt(i);
-            String key = "" + c;
-            stackString.append(key);
-            if (charMap.containsKey(stackString.toString())) {
-                outString.append(charMap.get(stackString.toString()));
-                stackString.setLength(0);
+    /**
+     * 流式转换,内存占用固定,不会关闭流
+     * <p>
+     * 结果与一次性转换整个文本相同
+     * </p>
+     *
+     * @param in 源
+     * @param out 转换结果
+     * @throws IOException 读写失败
+     */
+    public void convert(Reader in, Writer out) throws IOException {
+        char[] buffer = new char[Math.max(STREAM_BUFFER_SIZE, maxKeyLength * 2)];
+        StringBuilder converted = new StringBuilder(buffer.length);
+        int filled = 0;
+        while (true) {
+            filled += fill(in, buffer, filled);
+            boolean end = filled < buffer.length;
+            //没读到末尾时,只从后面还有maxKeyLength个字符的位置开始匹配,保证最长匹配不被缓冲区截断
+            int stop = end ? filled : filled - lookahead() + 1;
+            int next = convert(buffer, 0, stop, filled, converted);
+            out.append(converted);
+            converted.setLength(0);
+            if (end) {
+                return;
+            }
+            System.arraycopy(buffer, next, buffer, 0, filled - next);
+            filled -= next;
+        }
+    }
+
+    /**
+     * 多线程流式转换,适合大文件,不会关闭流
+     * <p>
+     * 按{@value #PARALLEL_BLOCK_SIZE}个字符分块,在不属于任何词的字符(如标点、换行)之后切分,
+     * 词不会跨块,因此结果与单线程相同;同时处理的块数不超过parallelism*2,内存占用有上限
+     * </p>
+     *
+     * @param in 源
+     * @param out 转换结果
+     * @param parallelism 线程数,为1时等同于{@link #convert(Reader, Writer)}
+     * @throws IOException 读写失败
+     */
+    public void convert(Reader in, Writer out, int parallelism) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("并行线程数必须大于0:" + parallelism);
+        }
+        if (parallelism == 1) {
+            convert(in, out);
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "zh-converter-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Future<String>> pending = new ArrayDeque<>();
+            char[] buffer = new char[Math.max(PARALLEL_BLOCK_SIZE, maxKeyLength * 2)];
+            int filled = 0;
+            while (true) {
+                filled += fill(in, buffer, filled);
+                boolean end = filled < buffer.length;
+                int split = end ? filled : safePoint(buffer, filled);
+                if (split > 0) {
+                    char[] block = Arrays.copyOf(buffer, split);
+                    pending.add(pool.submit(() -> {
+                        StringBuilder converted = new StringBuilder(block.length);
+                        convert(block, 0, block.length, converted);
+                        return converted.toString();
+                    }));
+                } else {	//整块都找不到切分点,在当前线程转换,只转换到后面还有maxKeyLength个字符的位置
+                    StringBuilder converted = new StringBuilder(filled);
+                    split = convert(buffer, 0, filled - lookahead() + 1, filled, converted);
+                    pending.add(CompletableFuture.completedFuture(converted.toString()));
+                }
+                System.arraycopy(buffer, split, buffer, 0, filled - split);
+                filled -= split;
+                while (pending.size() > parallelism * 2 || (end && !pending.isEmpty())) {
+                    out.write(await(pending.poll()));
+                }
+                if (end) {
+                    return;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 转换起始位置在[offset, stop)的词,匹配可以用到end之前的字符
+     * @return 下一个待转换的位置,可能超过stop
+     */
+    private int convert(char[] src, int offset, int stop, int end, StringBuilder out) {
+        int i = offset;
+        while (i < stop) {
+            int matched = match(src, i, end);
+            if (matched < 0) {
+                out.append(src[i]);
+                i++;
             } else {
-                CharSequence sequence = stackString.subSequence(0, stackString.length() - 1);
-                stackString.delete(0, stackString.length() - 1);
-                flushStack(outString, new StringBuilder(sequence));
+                int node = matched & NODE_MASK;
+                out.append(values, valueStart[node], valueLength[node]);
+                i += matched >>> NODE_BITS;
             }
         }
+        return i;
+    }
 
-        flushStack(outString, stackString);
+    /**
+     * 字典中最长的词的字符数
+     * @return
+     */
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
 
-        return outString.toString();
+    /**
+     * 原始字典
+     * <p>
+     * 转换使用加载时编译的trie,修改返回的Properties不会影响转换结果
+     * </p>
+     * @return
+     */
+    public Properties getDict() {
+        return charMap;
     }
 
-    private void flushStack(StringBuilder outString, StringBuilder stackString) {
-        while (stackString.length() > 0) {
-            if (charMap.containsKey(stackString.toString())) {
-                outString.append(charMap.get(stackString.toString()));
-                stackString.setLength(0);
+    /* match返回值:低NODE_BITS位为节点,高位为匹配的字符数 */
+    private static final int NODE_BITS = 24;
+    private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+    /* 匹配字符数占用剩余的高位,不能使int变为负数 */
+    private static final int MAX_KEY_LENGTH = (1 << (31 - NODE_BITS)) - 1;
 
+    /**
+     * 从position开始查找最长的词
+     * @return -1为没有匹配,否则为(匹配字符数 &lt;&lt; NODE_BITS) | 节点
+     */
+    private int match(char[] src, int position, int end) {
+        int node = rootIndex[src[position]];
+        int best = -1;
+        int length = 1;
+        while (node >= 0) {
+            if (valueLength[node] >= 0) {
+                best = length << NODE_BITS | node;
+            }
+            if (position + length >= end) {
+                break;
+            }
+            node = child(node, src[position + length]);
+            length++;
+        }
+        return best;
+    }
+
+    /**
+     * 在子节点中二分查找字符
+     */
+    private int child(int node, char c) {
+        int low = childStart[node];
+        int high = childEnd[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
             } else {
-                outString.append("" + stackString.charAt(0));
-                stackString.delete(0, 1);
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从一个位置开始匹配最多需要的字符数,字典为空时为1
+     */
+    private int lookahead() {
+        return Math.max(maxKeyLength, 1);
+    }
+
+    /**
+     * 从后往前查找不属于任何词的字符,词不会跨过这个字符,它之后的位置可以安全切分
+     * @return 切分位置,0为没有找到
+     */
+    private int safePoint(char[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            char c = buffer[i];
+            if ((keyChars[c >>> 6] & (1L << c)) == 0) {
+                return i + 1;
             }
+        }
+        return 0;
+    }
 
+    /**
+     * 从offset开始读满buffer
+     * @return 读到的字符数,少于剩余长度代表已到末尾
+     */
+    private static int fill(Reader in, char[] buffer, int offset) throws IOException {
+        int filled = offset;
+        int read;
+        while (filled < buffer.length && (read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += read;
         }
+        return filled - offset;
     }
 
-    public Properties getDict() {
-        return charMap;
+    private static String await(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("转换时被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 把字典编译为trie:先建立按字符排序的树,再按层序展开到数组中,使每个节点的子节点连续存放
+     */
+    private static Trie compile(Properties charMap) {
+        long[] keyChars = new long[(Character.MAX_VALUE + 1) / 64];
+        int maxKeyLength = 0;
+        TreeNode root = new TreeNode();
+        int nodeCount = 0;
+        int valueChars = 0;
+        for (String key : charMap.stringPropertyNames()) {
+            if (key.isEmpty()) {
+                continue;
+            }
+            if (key.length() > MAX_KEY_LENGTH) {
+                throw new IllegalStateException("词过长:" + key.length() + "个字符,最多" + MAX_KEY_LENGTH + "个");
+            }
+            TreeNode node = root;
+            for (int i = 0; i < key.length(); i++) {
+                keyChars[key.charAt(i) >>> 6] |= 1L << key.charAt(i);
+                TreeNode next = node.children.get(key.charAt(i));
+                if (next == null) {
+                    next = new TreeNode();
+                    node.children.put(key.charAt(i), next);
+                    nodeCount++;
+                }
+                node = next;
+            }
+            node.value = charMap.getProperty(key);
+            valueChars += node.value.length();
+            maxKeyLength = Math.max(maxKeyLength, key.length());
+        }
+        if (nodeCount > NODE_MASK) {
+            throw new IllegalStateException("字典过大:" + nodeCount + "个节点");
+        }
+        int[] rootIndex = new int[Character.MAX_VALUE + 1];
+        char[] labels = new char[nodeCount];
+        int[] childStart = new int[nodeCount];
+        int[] childEnd = new int[nodeCount];
+        int[] valueStart = new int[nodeCount];
+        int[] valueLength = new int[nodeCount];
+        char[] values = new char[valueChars];
+        Arrays.fill(rootIndex, -1);
+
+        List<TreeNode> queue = new ArrayList<>(nodeCount);
+        int valueOffset = 0;
+        for (Map.Entry<Character, TreeNode> entry : root.children.entrySet()) {
+            rootIndex[entry.getKey()] = queue.size();
+            labels[queue.size()] = entry.getKey();
+            queue.add(entry.getValue());
+        }
+        for (int i = 0; i < queue.size(); i++) {
+            TreeNode node = queue.get(i);
+            childStart[i] = queue.size();
+            for (Map.Entry<Character, TreeNode> entry : node.children.entrySet()) {
+                labels[queue.size()] = entry.getKey();
+                queue.add(entry.getValue());
+            }
+            childEnd[i] = queue.size();
+            if (node.value == null) {
+                valueLength[i] = -1;
+            } else {
+                node.value.getChars(0, node.value.length(), values, valueOffset);
+                valueStart[i] = valueOffset;
+                valueLength[i] = node.value.length();
+                valueOffset += node.value.length();
+            }
+        }
+        return new Trie(rootIndex, labels, childStart, childEnd, valueStart, valueLength, values, maxKeyLength, keyChars);
+    }
+
+    /**
+     * 编译结果,字段含义见ZHConverter的同名字段
+     */
+    private static final class Trie {
+        private final int[] rootIndex;
+        private final char[] labels;
+        private final int[] childStart;
+        private final int[] childEnd;
+        private final int[] valueStart;
+        private final int[] valueLength;
+        private final char[] values;
+        private final int maxKeyLength;
+        private final long[] keyChars;
+
+        private Trie(int[] rootIndex, char[] labels, int[] childStart, int[] childEnd, int[] valueStart,
+                int[] valueLength, char[] values, int maxKeyLength, long[] keyChars) {
+            this.rootIndex = rootIndex;
+            this.labels = labels;
+            this.childStart = childStart;
+            this.childEnd = childEnd;
+            this.valueStart = valueStart;
+            this.valueLength = valueLength;
+            this.values = values;
+            this.maxKeyLength = maxKeyLength;
+            this.keyChars = keyChars;
+        }
+    }
+
+    /**
+     * 编译trie时使用的临时节点
+     */
+    private static final class TreeNode {
+        private final TreeMap<Character, TreeNode> children = new TreeMap<>();
+        private String value;
     }
 
 }
@@ -1,7 +1,9 @@
 package com.ag777.util.lang.string;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Properties;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
@@ -10,12 +12,28 @@ import java.util.regex.Pattern;
  * <p>
  * 修改自开源库https://github.com/rookiefly/java-zhconverter
  * </p>
+ * <p>
+ * [新增]流式及多线程转换toTraditional/toSimplified(Reader, Writer)
+ * </p>
+ * <p>
+ * [修改]isContainsChinese/isAllChinese/isTraditional改为查预先生成的BMP位图,不再每次编译正则或者拼接字符串;
+ * 繁简字符的位图在第一次使用时由字典生成
+ * </p>
  * 
  * @author rookiefly
- * @version create on 2017年10月13日,last modify at 2018年02月07日
+ * @version create on 2017年10月13日,last modify at 2026年10月18日
  */
 public class ZHUtils {
 
+    /* 中文(\u4e00-\u9fa5)的位图 */
+    private static final long[] HAN = newBits();
+
+    static {
+        for (char c = '\u4e00'; c <= '\u9fa5'; c++) {
+            HAN[c >>> 6] |= 1L << c;
+        }
+    }
+
 	/**
 	 * 转换为繁体中文
 	 * @param in
@@ -35,60 +53,287 @@ public class ZHUtils {
     }
 
     /**
-     * 是否为繁体
+     * 流式转换为繁体中文,不会关闭流
+     * @param in 源
+     * @param out 转换结果
+     * @throws IOException 读写失败
+     */
+    public static void toTraditional(Reader in, Writer out) throws IOException {
+        ZHConverter.getInstance(ZHConverter.TRADITIONAL).convert(in, out);
+    }
+
+    /**
+     * 多线程流式转换为繁体中文,适合大文件,结果与单线程相同,不会关闭流
+     * @param in 源
+     * @param out 转换结果
+     * @param parallelism 线程数
+     * @throws IOException 读写失败
+     */
+    public static void toTraditional(Reader in, Writer out, int parallelism) throws IOException {
+        ZHConverter.getInstance(ZHConverter.TRADITIONAL).convert(in, out, parallelism);
+    }
+
+    /**
+     * 流式转换为简体中文,不会关闭流
+     * @param in 源
+     * @param out 转换结果
+     * @throws IOException 读写失败
+     */
+    public static void toSimplified(Reader in, Writer out) throws IOException {
+        ZHConverter.getInstance(ZHConverter.SIMPLIFIED).convert(in, out);
+    }
+
+    /**
+     * 多线程流式转换为简体中文,适合大文件,结果与单线程相同,不会关闭流
+     * @param in 源
+     * @param out 转换结果
+     * @param parallelism 线程数
+     * @throws IOException 读写失败
+     */
+    public static void toSimplified(Reader in, Writer out, int parallelism) throws IOException {
+        ZHConverter.getInstance(ZHConverter.SIMPLIFIED).convert(in, out, parallelism);
+    }
+
+    /**
+     * 是否为繁体,保留String版本以兼容按旧签名编译的代码
      * @param in
      * @return
      */
     public static boolean isTraditional(String in) {
-        ZHConverter converter = ZHConverter.getInstance(ZHConverter.SIMPLIFIED);
-        Properties dict = converter.getDict();
-        for (int i = 0; i < in.length(); i++) {
-            char c = in.charAt(i);
-            String key = "" + c;
-            if (dict.containsKey(key)) {
-                return true;
-            }
-        }
-        return false;
+        return isTraditional((CharSequence) in);
     }
 
     /**
-     * 是否包含中文
+     * 是否为繁体,即是否包含只在繁体中使用的字
+     * @param in
+     * @return
+     */
+    public static boolean isTraditional(CharSequence in) {
+        return in != null && containsAny(in, DictChars.TRADITIONAL);
+    }
+
+    /**
+     * 是否包含只在繁体中使用的字
+     * @param chars
+     * @param offset 起始位置
+     * @param length 字符数
+     * @return
+     */
+    public static boolean isTraditional(char[] chars, int offset, int length) {
+        return containsAny(chars, offset, length, DictChars.TRADITIONAL);
+    }
+
+    /**
+     * 是否为只在繁体中使用的字(字典中可以转换为简体的字)
+     * @param c
+     * @return
+     */
+    public static boolean isTraditional(char c) {
+        return contains(DictChars.TRADITIONAL, c);
+    }
+
+    /**
+     * 是否包含只在简体中使用的字
+     * @param in
+     * @return
+     */
+    public static boolean isSimplified(CharSequence in) {
+        return in != null && containsAny(in, DictChars.SIMPLIFIED);
+    }
+
+    /**
+     * 是否为只在简体中使用的字(字典中可以转换为繁体的字)
+     * @param c
+     * @return
+     */
+    public static boolean isSimplified(char c) {
+        return contains(DictChars.SIMPLIFIED, c);
+    }
+
+    /**
+     * 是否包含中文,保留String版本以兼容按旧签名编译的代码
      * @param str
      * @return
      */
     public static boolean isContainsChinese(String str) {
+        return isContainsChinese((CharSequence) str);
+    }
 
-        String regEx = "[\u4e00-\u9fa5]";
-        Pattern pat = Pattern.compile(regEx);
-        Matcher matcher = pat.matcher(str);
-        boolean flg = false;
-        if (matcher.find()) {
-            flg = true;
-        }
-        return flg;
+    /**
+     * 是否包含中文(\u4e00-\u9fa5)
+     * @param str
+     * @return
+     */
+    public static boolean isContainsChinese(CharSequence str) {
+        return str != null && containsAny(str, HAN);
+    }
+
+    /**
+     * 是否包含中文(\u4e00-\u9fa5)
+     * @param chars
+     * @param offset 起始位置
+     * @param length 字符数
+     * @return
+     */
+    public static boolean isContainsChinese(char[] chars, int offset, int length) {
+        return containsAny(chars, offset, length, HAN);
     }
 
     /**
-     * 是否都为中文
+     * 是否都为中文,保留String版本以兼容按旧签名编译的代码
      * @param str
      * @return
      */
     public static boolean isAllChinese(String str) {
+        return isAllChinese((CharSequence) str);
+    }
+
+    /**
+     * 是否都为中文(\u4e00-\u9fa5)
+     * @param str
+     * @return 为null或者空串时返回false
+     */
+    public static boolean isAllChinese(CharSequence str) {
+        if (str == null || str.length() == 0) {
+            return false;
+        }
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            if (!contains(HAN, str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        boolean flag = true;
-        if (str == null || str.trim().isEmpty()) {
+    /**
+     * 是否都为中文(\u4e00-\u9fa5)
+     * @param chars
+     * @param offset 起始位置
+     * @param length 字符数
+     * @return length为0时返回false
+     */
+    public static boolean isAllChinese(char[] chars, int offset, int length) {
+        if (length == 0) {
             return false;
         }
+        for (int i = offset; i < offset + length; i++) {
+            if (!contains(HAN, chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否为中文(\u4e00-\u9fa5)
+     * @param c
+     * @return
+     */
+    public static boolean isChinese(char c) {
+        return contains(HAN, c);
+    }
+
+    /*===========================内部方法===========================*/
 
+    private static boolean contains(long[] bits, char c) {
+        return (bits[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private static boolean containsAny(CharSequence str, long[] bits) {
         int length = str.length();
         for (int i = 0; i < length; i++) {
-            if (!isContainsChinese(str.substring(i, i + 1))) {
-                flag = false;
-                break;
+            if (contains(bits, str.charAt(i))) {
+                return true;
             }
         }
+        return false;
+    }
+
+    private static boolean containsAny(char[] chars, int offset, int length, long[] bits) {
+        for (int i = offset; i < offset + length; i++) {
+            if (contains(bits, chars[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 覆盖整个BMP(65536位)的位图
+     */
+    private static long[] newBits() {
+        return new long[(Character.MAX_VALUE + 1) / 64];
+    }
 
-        return flag;
+    /**
+     * 字典中单个字符的词
+     */
+    private static long[] singleChars(Properties dict) {
+        long[] bits = newBits();
+        for (String key : dict.stringPropertyNames()) {
+            if (key.length() == 1) {
+                char c = key.charAt(0);
+                bits[c >>> 6] |= 1L << c;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 繁简字符的位图,第一次使用时才加载字典
+     */
+    private static final class DictChars {
+        private static final long[] TRADITIONAL = singleChars(ZHConverter.getInstance(ZHConverter.SIMPLIFIED).getDict());
+        private static final long[] SIMPLIFIED = singleChars(ZHConverter.getInstance(ZHConverter.TRADITIONAL).getDict());
+    }
+
+
+    public static void main(String[] args) {
+        /* 模拟评论文本,对比原实现(每次编译正则、逐字substring、Properties查找)与位图的耗时 */
+        String[] samples = {
+                "这个产品真的很好用，物流也很快，给五星好评！",
+                "Great product, would buy again. 推荐购买",
+                "這個東西質量不錯，價格也實惠，下次還會再來。",
+                "2026-10-18 12:00:00 order #10086 shipped",
+                "客服态度很好，耐心解答了我的问题，赞一个👍"
+        };
+        Pattern pattern = Pattern.compile("[\u4e00-\u9fa5]");
+        Properties dict = ZHConverter.getInstance(ZHConverter.SIMPLIFIED).getDict();
+        isTraditional("预热");
+        int n = 200_000;
+        for (int round = 0; round < 3; round++) {	//前两轮预热
+            int hits = 0;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                String sample = samples[i % samples.length];
+                if (Pattern.compile("[\u4e00-\u9fa5]").matcher(sample).find()) {
+                    hits++;
+                }
+                boolean all = true;
+                for (int j = 0; j < sample.length() && all; j++) {
+                    all = pattern.matcher(sample.substring(j, j + 1)).find();
+                }
+                for (int j = 0; j < sample.length(); j++) {
+                    if (dict.containsKey("" + sample.charAt(j))) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                String sample = samples[i % samples.length];
+                if (isContainsChinese(sample)) {
+                    hits++;
+                }
+                isAllChinese(sample);
+                if (isTraditional(sample)) {
+                    hits++;
+                }
+            }
+            long t2 = System.nanoTime();
+            System.out.printf("原实现 %d ns/条, 位图 %d ns/条 (%d)%n", (t1 - t0) / n, (t2 - t1) / n, hits);
+        }
     }
 }
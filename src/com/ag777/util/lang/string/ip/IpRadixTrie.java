@@ -0,0 +1,562 @@
+package com.ag777.util.lang.string.ip;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import com.ag777.util.lang.StringUtils;
+
+/**
+ * ip前缀树(压缩的二进制基数树/Patricia树),不可变,线程安全
+ * <p>
+ * 用于判断ip是否命中大量的白名单/黑名单网段,以及最长前缀匹配(命中多个网段时取最精确的那个)<br>
+ * 网段通过{@link Builder}添加,支持{@link IpRangeSet#parse(String)}的所有格式(即IpValidator支持的格式,以及CIDR和起止地址),
+ * 非CIDR的网段拆成最少的CIDR存储<br>
+ * 节点只在分叉处产生,存储在数组中;查询时每个节点只做一次掩码比较,复杂度为O(地址位数),与网段数量无关;
+ * 传入int、两个long或byte[]时查询过程不创建任何对象,传入字符串时ip的解析也不创建对象
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <V> 网段对应的值
+ */
+public final class IpRadixTrie<V> {
+
+	/* 节点:前缀(ipv4左对齐到高32位,与ipv6统一按128位处理)、前缀长度、左右子节点、值(null表示分叉节点) */
+	private final long[] prefixHi;
+	private final long[] prefixLo;
+	private final int[] lengths;
+	private final int[] child0;
+	private final int[] child1;
+	private final Object[] values;
+	private final int ipV4Root;
+	private final int ipV6Root;
+	private final int size;
+
+	private IpRadixTrie(Node ipV4, Node ipV6, int size) {
+		int count = count(ipV4) + count(ipV6);
+		prefixHi = new long[count];
+		prefixLo = new long[count];
+		lengths = new int[count];
+		child0 = new int[count];
+		child1 = new int[count];
+		values = new Object[count];
+		int next = 0;
+		ipV4Root = ipV4 == null ? -1 : next;
+		next = flatten(ipV4, next);
+		ipV6Root = ipV6 == null ? -1 : next;
+		flatten(ipV6, next);
+		this.size = size;
+	}
+
+	/**
+	 * @return 构建器
+	 */
+	public static <V> Builder<V> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * 由ip列表构建,值为添加时的原字符串
+	 * @param ips ip、网段、CIDR或起止地址
+	 * @return
+	 * @throws IllegalArgumentException 格式不支持
+	 */
+	public static IpRadixTrie<String> of(Collection<String> ips) throws IllegalArgumentException {
+		Builder<String> builder = builder();
+		for (String ip : ips) {
+			builder.add(ip, ip);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * ip是否在任意一个网段中
+	 * @param ip 单个ipv4或ipv6地址
+	 * @return
+	 * @throws IllegalArgumentException ip格式错误
+	 */
+	public boolean contains(String ip) throws IllegalArgumentException {
+		if (ip.indexOf(':') >= 0) {
+			return find(ipV6Root, parseV6(ip, true), parseV6(ip, false), true) >= 0;
+		}
+		return find(ipV4Root, parseV4(ip, 0, ip.length()) << 32, 0, true) >= 0;
+	}
+
+	/**
+	 * @param ipV4 ipv4地址,如0xC0A80101表示192.168.1.1
+	 * @return ip是否在任意一个网段中
+	 */
+	public boolean contains(int ipV4) {
+		return find(ipV4Root, (long) ipV4 << 32, 0, true) >= 0;
+	}
+
+	/**
+	 * @param hi ipv6地址的高64位
+	 * @param lo ipv6地址的低64位
+	 * @return ip是否在任意一个网段中
+	 */
+	public boolean contains(long hi, long lo) {
+		return find(ipV6Root, hi, lo, true) >= 0;
+	}
+
+	/**
+	 * @param address 4字节(ipv4)或16字节(ipv6),如InetAddress.getAddress()
+	 * @return ip是否在任意一个网段中
+	 */
+	public boolean contains(byte[] address) {
+		return find(address, true) >= 0;
+	}
+
+	/**
+	 * 最长前缀匹配
+	 * @param ip 单个ipv4或ipv6地址
+	 * @return 包含该ip的最精确的网段对应的值,没有命中时返回null
+	 * @throws IllegalArgumentException ip格式错误
+	 */
+	public V longestMatch(String ip) throws IllegalArgumentException {
+		if (ip.indexOf(':') >= 0) {
+			return value(find(ipV6Root, parseV6(ip, true), parseV6(ip, false), false));
+		}
+		return value(find(ipV4Root, parseV4(ip, 0, ip.length()) << 32, 0, false));
+	}
+
+	/**
+	 * @param ipV4 ipv4地址
+	 * @return 包含该ip的最精确的网段对应的值,没有命中时返回null
+	 */
+	public V longestMatch(int ipV4) {
+		return value(find(ipV4Root, (long) ipV4 << 32, 0, false));
+	}
+
+	/**
+	 * @param hi ipv6地址的高64位
+	 * @param lo ipv6地址的低64位
+	 * @return 包含该ip的最精确的网段对应的值,没有命中时返回null
+	 */
+	public V longestMatch(long hi, long lo) {
+		return value(find(ipV6Root, hi, lo, false));
+	}
+
+	/**
+	 * @param address 4字节(ipv4)或16字节(ipv6)
+	 * @return 包含该ip的最精确的网段对应的值,没有命中时返回null
+	 */
+	public V longestMatch(byte[] address) {
+		return value(find(address, false));
+	}
+
+	/**
+	 * @return 存储的CIDR个数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return 是否为空
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/*===========================查询===========================*/
+
+	/**
+	 * 从根节点向下查找
+	 * @param any true时命中任意网段即返回
+	 * @return 最后命中的节点,没有命中时返回-1
+	 */
+	private int find(int root, long hi, long lo, boolean any) {
+		int best = -1;
+		int node = root;
+		while (node >= 0) {
+			int length = lengths[node];
+			if (!matches(hi, lo, prefixHi[node], prefixLo[node], length)) {
+				break;
+			}
+			if (values[node] != null) {
+				best = node;
+				if (any) {
+					break;
+				}
+			}
+			if (length == 128) {
+				break;
+			}
+			node = bitAt(hi, lo, length) == 0 ? child0[node] : child1[node];
+		}
+		return best;
+	}
+
+	private int find(byte[] address, boolean any) {
+		if (address.length == 4) {
+			long value = 0;
+			for (int i = 0; i < 4; i++) {
+				value = value << 8 | (address[i] & 0xFF);
+			}
+			return find(ipV4Root, value << 32, 0, any);
+		}
+		if (address.length == 16) {
+			long hi = 0;
+			long lo = 0;
+			for (int i = 0; i < 8; i++) {
+				hi = hi << 8 | (address[i] & 0xFF);
+				lo = lo << 8 | (address[i + 8] & 0xFF);
+			}
+			return find(ipV6Root, hi, lo, any);
+		}
+		throw new IllegalArgumentException("地址长度必须为4或16字节:" + address.length);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V value(int node) {
+		return node < 0 ? null : (V) values[node];
+	}
+
+	/**
+	 * 前length位是否相同
+	 */
+	private static boolean matches(long aHi, long aLo, long bHi, long bLo, int length) {
+		if (length == 0) {
+			return true;
+		}
+		if (length <= 64) {
+			return (aHi ^ bHi) >>> (64 - length) == 0;
+		}
+		return aHi == bHi && (aLo ^ bLo) >>> (128 - length) == 0;
+	}
+
+	/**
+	 * 第index位(从最高位开始,0起)
+	 */
+	private static int bitAt(long hi, long lo, int index) {
+		return (int) (index < 64 ? hi >>> (63 - index) : lo >>> (127 - index)) & 1;
+	}
+
+	/**
+	 * 解析ipv4的[from,to)部分,不创建对象
+	 */
+	private static long parseV4(String ip, int from, int to) {
+		long value = 0;
+		int octets = 0;
+		int i = from;
+		while (i < to) {
+			int octet = 0;
+			int digits = 0;
+			while (i < to && ip.charAt(i) != '.') {
+				char c = ip.charAt(i++);
+				if (c < '0' || c > '9' || ++digits > 3) {
+					throw new IllegalArgumentException("不是ip地址:" + ip);
+				}
+				octet = octet * 10 + (c - '0');
+			}
+			if (digits == 0 || octet > 255 || ++octets > 4) {
+				throw new IllegalArgumentException("不是ip地址:" + ip);
+			}
+			value = value << 8 | octet;
+			if (i < to) {	//跳过点,点不能在末尾
+				if (++i == to) {
+					throw new IllegalArgumentException("不是ip地址:" + ip);
+				}
+			}
+		}
+		if (octets != 4) {
+			throw new IllegalArgumentException("不是ip地址:" + ip);
+		}
+		return value;
+	}
+
+	/**
+	 * 解析ipv6地址,不创建对象;128位无法一次返回,分高低两次调用
+	 * @param high true返回高64位,false返回低64位
+	 */
+	private static long parseV6(String ip, boolean high) {
+		int gap = ip.indexOf("::");
+		if (gap >= 0 && ip.indexOf("::", gap + 1) >= 0) {
+			throw new IllegalArgumentException("不是ipv6地址:" + ip);
+		}
+		//::前后两部分分别累加,最后把前半部分左移到位
+		long headHi = 0;
+		long headLo = 0;
+		int headCount = 0;
+		long tailHi = 0;
+		long tailLo = 0;
+		int tailCount = 0;
+		for (int part = 0; part < (gap >= 0 ? 2 : 1); part++) {
+			int from = part == 0 ? 0 : gap + 2;
+			int to = part == 0 && gap >= 0 ? gap : ip.length();
+			long accHi = 0;
+			long accLo = 0;
+			int count = 0;
+			int i = from;
+			while (i < to) {
+				int groupEnd = i;
+				boolean dotted = false;
+				while (groupEnd < to && ip.charAt(groupEnd) != ':') {
+					dotted |= ip.charAt(groupEnd) == '.';
+					groupEnd++;
+				}
+				if (dotted) {	//末尾嵌入的ipv4,占两组
+					if (groupEnd != to || (gap >= 0 && part == 0)) {
+						throw new IllegalArgumentException("不是ipv6地址:" + ip);
+					}
+					long v4 = parseV4(ip, i, to);
+					accHi = accHi << 32 | accLo >>> 32;
+					accLo = accLo << 32 | v4;
+					count += 2;
+				} else {
+					int group = 0;
+					if (groupEnd == i || groupEnd - i > 4) {
+						throw new IllegalArgumentException("不是ipv6地址:" + ip);
+					}
+					for (int j = i; j < groupEnd; j++) {
+						int digit = Character.digit(ip.charAt(j), 16);
+						if (digit < 0) {
+							throw new IllegalArgumentException("不是ipv6地址:" + ip);
+						}
+						group = group << 4 | digit;
+					}
+					accHi = accHi << 16 | accLo >>> 48;
+					accLo = accLo << 16 | group;
+					count++;
+				}
+				if (groupEnd < to && groupEnd + 1 == to) {	//冒号不能在末尾
+					throw new IllegalArgumentException("不是ipv6地址:" + ip);
+				}
+				i = groupEnd + 1;
+			}
+			if (part == 0) {
+				headHi = accHi;
+				headLo = accLo;
+				headCount = count;
+			} else {
+				tailHi = accHi;
+				tailLo = accLo;
+				tailCount = count;
+			}
+		}
+		if (gap >= 0 ? headCount + tailCount > 7 : headCount != 8) {
+			throw new IllegalArgumentException("不是ipv6地址:" + ip);
+		}
+		int shift = 16 * (8 - headCount);
+		long hi;
+		long lo;
+		if (shift >= 128) {
+			hi = 0;
+			lo = 0;
+		} else if (shift >= 64) {
+			hi = headLo << (shift - 64);
+			lo = 0;
+		} else if (shift > 0) {
+			hi = headHi << shift | headLo >>> (64 - shift);
+			lo = headLo << shift;
+		} else {
+			hi = headHi;
+			lo = headLo;
+		}
+		return high ? hi | tailHi : lo | tailLo;
+	}
+
+	/*===========================构建===========================*/
+
+	/**
+	 * 构建时使用的节点
+	 */
+	private static final class Node {
+		private final long hi;
+		private final long lo;
+		private final int length;
+		private Object value;
+		private final Node[] children = new Node[2];
+
+		private Node(long hi, long lo, int length, Object value) {
+			//只保留前length位
+			this.hi = length == 0 ? 0 : (length >= 64 ? hi : hi & -1L << (64 - length));
+			this.lo = length <= 64 ? 0 : (length == 128 ? lo : lo & -1L << (128 - length));
+			this.length = length;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 插入一个前缀,返回插入后的子树根节点
+	 */
+	private static Node insert(Node node, long hi, long lo, int length, Object value) {
+		if (node == null) {
+			return new Node(hi, lo, length, value);
+		}
+		int common = Math.min(Math.min(node.length, length), commonPrefix(node.hi, node.lo, hi, lo));
+		if (common == node.length) {
+			if (length == node.length) {	//相同前缀,后添加的覆盖先添加的
+				node.value = value;
+				return node;
+			}
+			int bit = bitAt(hi, lo, node.length);
+			node.children[bit] = insert(node.children[bit], hi, lo, length, value);
+			return node;
+		}
+		if (common == length) {	//新前缀是当前节点的祖先
+			Node parent = new Node(hi, lo, length, value);
+			parent.children[bitAt(node.hi, node.lo, length)] = node;
+			return parent;
+		}
+		//在第common位分叉,插入一个没有值的分叉节点
+		Node fork = new Node(hi, lo, common, null);
+		fork.children[bitAt(node.hi, node.lo, common)] = node;
+		fork.children[bitAt(hi, lo, common)] = new Node(hi, lo, length, value);
+		return fork;
+	}
+
+	private static int commonPrefix(long aHi, long aLo, long bHi, long bLo) {
+		if (aHi != bHi) {
+			return Long.numberOfLeadingZeros(aHi ^ bHi);
+		}
+		return 64 + Long.numberOfLeadingZeros(aLo ^ bLo);
+	}
+
+	private static int count(Node node) {
+		if (node == null) {
+			return 0;
+		}
+		return 1 + count(node.children[0]) + count(node.children[1]);
+	}
+
+	/**
+	 * 按广度优先顺序写入数组,返回下一个空位
+	 */
+	private int flatten(Node root, int next) {
+		if (root == null) {
+			return next;
+		}
+		Deque<Node> queue = new ArrayDeque<>();
+		queue.add(root);
+		int index = next;
+		int assigned = next + 1;	//已分配位置的节点数
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			prefixHi[index] = node.hi;
+			prefixLo[index] = node.lo;
+			lengths[index] = node.length;
+			values[index] = node.value;
+			child0[index] = node.children[0] == null ? -1 : assigned++;
+			child1[index] = node.children[1] == null ? -1 : assigned++;
+			for (Node child : node.children) {
+				if (child != null) {
+					queue.add(child);
+				}
+			}
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * 构建器,非线程安全
+	 * @param <V> 网段对应的值
+	 */
+	public static final class Builder<V> {
+		private Node ipV4;
+		private Node ipV6;
+		private int size;
+
+		private Builder() {}
+
+		/**
+		 * 添加网段,与已添加的网段重叠时查询取最精确的那个,前缀完全相同时后添加的覆盖先添加的
+		 * @param ip ip、网段、CIDR或起止地址,见{@link IpRangeSet#parse(String)}
+		 * @param value 对应的值,不能为null
+		 * @return
+		 * @throws IllegalArgumentException 格式不支持或者值为null
+		 */
+		public Builder<V> add(String ip, V value) throws IllegalArgumentException {
+			return add(IpRangeSet.parse(ip), value);
+		}
+
+		/**
+		 * 添加集合中的所有地址,拆成最少的CIDR
+		 * @param set ip集合
+		 * @param value 对应的值,不能为null
+		 * @return
+		 */
+		public Builder<V> add(IpRangeSet set, V value) {
+			if (value == null) {
+				throw new IllegalArgumentException("值不能为null");
+			}
+			boolean ipV6Set = set.isIpV6();
+			set.forEachCidr((hi, lo, prefixLength) -> {
+				if (ipV6Set) {
+					ipV6 = insert(ipV6, hi, lo, prefixLength, value);
+				} else {
+					ipV4 = insert(ipV4, lo << 32, 0, prefixLength, value);
+				}
+				size++;
+			});
+			return this;
+		}
+
+		/**
+		 * @return 不可变的前缀树,之后继续添加不影响已构建的树
+		 */
+		public IpRadixTrie<V> build() {
+			return new IpRadixTrie<>(ipV4, ipV6, size);
+		}
+	}
+
+
+	public static void main(String[] args) {
+		/* 5万个随机网段,对比逐个用IpSameSegmentUtils判断和前缀树查询 */
+		Random random = new Random(1);
+		int rangeCount = 50000;
+		List<String> cidrs = new ArrayList<>(rangeCount);
+		String[] masks = new String[rangeCount];
+		Builder<String> builder = builder();
+		for (int i = 0; i < rangeCount; i++) {
+			int prefixLength = 16 + random.nextInt(17);
+			int address = random.nextInt() & (int) (-1L << (32 - prefixLength));
+			String ip = toIp(address);
+			cidrs.add(ip);
+			masks[i] = toIp((int) (-1L << (32 - prefixLength)));
+			builder.add(ip + "/" + prefixLength, ip);
+		}
+		long start = System.nanoTime();
+		IpRadixTrie<String> trie = builder.build();
+		System.out.printf("构建%d个网段: %d ms%n", trie.size(), (System.nanoTime() - start) / 1_000_000);
+
+		int[] queries = new int[1_000_000];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = random.nextInt();
+		}
+		for (int round = 0; round < 3; round++) {	//前两轮预热
+			int hits = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < 200; i++) {
+				String ip = toIp(queries[i]);
+				for (int j = 0; j < rangeCount; j++) {
+					if (IpSameSegmentUtils.isSameSegment(ip, masks[j], cidrs.get(j), masks[j])) {
+						hits++;
+						break;
+					}
+				}
+			}
+			long loop = System.nanoTime() - start;
+			start = System.nanoTime();
+			int trieHits = 0;
+			for (int query : queries) {
+				if (trie.contains(query)) {
+					trieHits++;
+				}
+			}
+			long lookup = System.nanoTime() - start;
+			System.out.printf("逐个判断 %.1f 微秒/次(命中%d/200), 前缀树 %.1f 纳秒/次(命中%d/%d)%n",
+					loop / 200 / 1000.0, hits, (double) lookup / queries.length, trieHits, queries.length);
+		}
+	}
+
+	private static String toIp(int address) {
+		return StringUtils.concat(address >>> 24, '.', address >>> 16 & 0xFF, '.', address >>> 8 & 0xFF, '.', address & 0xFF);
+	}
+}
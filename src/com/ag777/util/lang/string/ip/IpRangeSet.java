@@ -0,0 +1,767 @@
+package com.ag777.util.lang.string.ip;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import com.ag777.util.lang.StringUtils;
+
+/**
+ * ip区间集合,不可变
+ * <p>
+ * 以排序、不相交、不相邻的区间表示一组ipv4或ipv6地址,地址为128位无符号数(高64位,低64位),ipv4只用低32位;
+ * 合并、排除、拆分、转为CIDR都只处理区间,复杂度为O(区间数*log(区间数)),不会展开成单个地址<br>
+ * 通过{@link #parse(String)}解析,支持的格式:
+ * <ul>
+ * <li>IpValidator支持的ipv4格式,如192.168.1.2、192.168.1.2-100、192.168.1-3.*(与IpValidator.splitNetSegment一致,*代表1-255)</li>
+ * <li>IpValidator支持的ipv6格式,如2001::1:1、2001::1:1-ff、2001::1:*</li>
+ * <li>CIDR,如192.168.0.0/16、2001:db8::/32</li>
+ * <li>完整的起止地址,如192.168.1.10-192.168.2.20</li>
+ * </ul>
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+public final class IpRangeSet {
+
+	private static final long IPV4_MAX = 0xFFFFFFFFL;
+	private static final IpRangeSet EMPTY_V4 = new IpRangeSet(false, new long[0]);
+	private static final IpRangeSet EMPTY_V6 = new IpRangeSet(true, new long[0]);
+
+	private final boolean ipV6;
+	/* 第i个区间为[(bounds[4i],bounds[4i+1]), (bounds[4i+2],bounds[4i+3])],分别为起止地址的高64位和低64位 */
+	private final long[] bounds;
+
+	private IpRangeSet(boolean ipV6, long[] bounds) {
+		this.ipV6 = ipV6;
+		this.bounds = bounds;
+	}
+
+	/**
+	 * @param ipV6 是否ipv6
+	 * @return 空集合
+	 */
+	public static IpRangeSet empty(boolean ipV6) {
+		return ipV6 ? EMPTY_V6 : EMPTY_V4;
+	}
+
+	/**
+	 * ipv4区间
+	 * @param start 起始地址
+	 * @param end 结束地址(包含)
+	 * @return
+	 */
+	public static IpRangeSet ofV4(long start, long end) {
+		if (start < 0 || end > IPV4_MAX || start > end) {
+			throw new IllegalArgumentException("ipv4区间不合法:" + start + "-" + end);
+		}
+		return new IpRangeSet(false, new long[]{0, start, 0, end});
+	}
+
+	/**
+	 * 解析ip、网段、CIDR或者起止地址
+	 * @param ip 见类说明
+	 * @return
+	 * @throws IllegalArgumentException 格式不支持
+	 */
+	public static IpRangeSet parse(String ip) throws IllegalArgumentException {
+		if (StringUtils.isBlank(ip)) {
+			throw new IllegalArgumentException("参数字符串不能为空");
+		}
+		ip = ip.trim();
+		boolean v6 = ip.indexOf(':') >= 0;
+		int slash = ip.indexOf('/');
+		if (slash >= 0) {
+			return parseCidr(ip.substring(0, slash), ip.substring(slash + 1), v6);
+		}
+		if (v6) {
+			return parseV6Range(ip);
+		}
+		int dash = ip.indexOf('-');
+		if (dash >= 0 && ip.indexOf('.', dash) >= 0 && ip.substring(dash + 1).split("\\.", -1).length == 4) {	//完整的起止地址
+			return ofV4(parseV4(ip.substring(0, dash)), parseV4(ip.substring(dash + 1)));
+		}
+		return parseV4Segments(ip);
+	}
+
+	/**
+	 * 解析多个ip并合并,所有ip必须同为ipv4或者同为ipv6
+	 * @param ips ip列表
+	 * @param ipV6 是否ipv6
+	 * @return
+	 */
+	public static IpRangeSet parseAll(Collection<String> ips, boolean ipV6) {
+		List<IpRangeSet> sets = new ArrayList<>(ips.size());
+		for (String ip : ips) {
+			sets.add(parse(ip));
+		}
+		return union(sets, ipV6);
+	}
+
+	/**
+	 * 合并多个集合,排序一次,复杂度为O(区间数*log(区间数))
+	 * @param sets 集合
+	 * @param ipV6 是否ipv6,集合为空时决定结果的类型
+	 * @return
+	 */
+	public static IpRangeSet union(Collection<IpRangeSet> sets, boolean ipV6) {
+		int count = 0;
+		for (IpRangeSet set : sets) {
+			if (set.ipV6 != ipV6) {
+				throw new IllegalArgumentException("ipv4和ipv6不能合并");
+			}
+			count += set.rangeCount();
+		}
+		long[][] ranges = new long[count][];
+		int i = 0;
+		for (IpRangeSet set : sets) {
+			for (int r = 0; r < set.rangeCount(); r++) {
+				ranges[i++] = Arrays.copyOfRange(set.bounds, r * 4, r * 4 + 4);
+			}
+		}
+		return normalize(ipV6, ranges);
+	}
+
+	/**
+	 * @param other 另一个集合
+	 * @return 两者的并集
+	 */
+	public IpRangeSet union(IpRangeSet other) {
+		return union(Arrays.asList(this, other), ipV6);
+	}
+
+	/**
+	 * 排除other中的地址,复杂度为O(两者区间数之和)
+	 * @param other 要排除的地址
+	 * @return 差集
+	 */
+	public IpRangeSet subtract(IpRangeSet other) {
+		checkFamily(other);
+		long[] result = new long[(rangeCount() + other.rangeCount()) * 4];
+		int size = 0;
+		int j = 0;
+		for (int i = 0; i < rangeCount(); i++) {
+			long sHi = bounds[i * 4], sLo = bounds[i * 4 + 1];
+			long eHi = bounds[i * 4 + 2], eLo = bounds[i * 4 + 3];
+			//跳过完全在当前区间之前的排除区间
+			while (j < other.rangeCount() && compare(other.bounds[j * 4 + 2], other.bounds[j * 4 + 3], sHi, sLo) < 0) {
+				j++;
+			}
+			boolean remaining = true;
+			int k = j;
+			while (remaining && k < other.rangeCount() && compare(other.bounds[k * 4], other.bounds[k * 4 + 1], eHi, eLo) <= 0) {
+				long xsHi = other.bounds[k * 4], xsLo = other.bounds[k * 4 + 1];
+				long xeHi = other.bounds[k * 4 + 2], xeLo = other.bounds[k * 4 + 3];
+				if (compare(xsHi, xsLo, sHi, sLo) > 0) {	//排除区间之前的部分保留
+					long beforeLo = xsLo - 1;
+					long beforeHi = xsLo == 0 ? xsHi - 1 : xsHi;
+					result[size++] = sHi;
+					result[size++] = sLo;
+					result[size++] = beforeHi;
+					result[size++] = beforeLo;
+				}
+				if (compare(xeHi, xeLo, eHi, eLo) >= 0) {
+					remaining = false;
+				} else {
+					sLo = xeLo + 1;
+					sHi = sLo == 0 ? xeHi + 1 : xeHi;
+					k++;
+				}
+			}
+			if (remaining) {
+				result[size++] = sHi;
+				result[size++] = sLo;
+				result[size++] = eHi;
+				result[size++] = eLo;
+			}
+		}
+		return new IpRangeSet(ipV6, Arrays.copyOf(result, size));
+	}
+
+	/**
+	 * 是否包含某个地址,二分查找
+	 * @param ip 单个地址
+	 * @return
+	 * @throws IllegalArgumentException 不是单个地址或者类型不同
+	 */
+	public boolean contains(String ip) throws IllegalArgumentException {
+		long[] address;
+		if (ipV6) {
+			address = parseV6(ip);
+		} else {
+			address = new long[]{0, parseV4(ip)};
+		}
+		int low = 0;
+		int high = rangeCount() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (compare(bounds[mid * 4 + 2], bounds[mid * 4 + 3], address[0], address[1]) < 0) {
+				low = mid + 1;
+			} else if (compare(bounds[mid * 4], bounds[mid * 4 + 1], address[0], address[1]) > 0) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return 是否ipv6
+	 */
+	public boolean isIpV6() {
+		return ipV6;
+	}
+
+	/**
+	 * @return 是否为空
+	 */
+	public boolean isEmpty() {
+		return bounds.length == 0;
+	}
+
+	/**
+	 * @return 区间个数
+	 */
+	public int rangeCount() {
+		return bounds.length / 4;
+	}
+
+	/**
+	 * @return 地址个数
+	 */
+	public BigInteger size() {
+		BigInteger size = BigInteger.ZERO;
+		for (int i = 0; i < rangeCount(); i++) {
+			size = size.add(toBigInteger(bounds[i * 4 + 2], bounds[i * 4 + 3]))
+					.subtract(toBigInteger(bounds[i * 4], bounds[i * 4 + 1]))
+					.add(BigInteger.ONE);
+		}
+		return size;
+	}
+
+	/**
+	 * 按顺序拆分为多个集合,每个集合最多limit个地址
+	 * @param limit 每个集合的最大地址数
+	 * @return
+	 */
+	public List<IpRangeSet> split(long limit) {
+		return split(limit, limit);
+	}
+
+	/**
+	 * 按顺序拆分,第一个集合最多firstLimit个地址,之后每个最多limit个
+	 */
+	List<IpRangeSet> split(long firstLimit, long limit) {
+		if (firstLimit <= 0 || limit <= 0) {
+			throw new IllegalArgumentException("每个列表的最大限制数必须大于0:" + limit);
+		}
+		List<IpRangeSet> result = new ArrayList<>();
+		long[] chunk = new long[16];
+		int chunkSize = 0;
+		long room = firstLimit;
+		for (int i = 0; i < rangeCount(); i++) {
+			long sHi = bounds[i * 4], sLo = bounds[i * 4 + 1];
+			long eHi = bounds[i * 4 + 2], eLo = bounds[i * 4 + 3];
+			while (true) {
+				//区间剩余的地址数-1
+				long dLo = eLo - sLo;
+				long dHi = eHi - sHi - (Long.compareUnsigned(eLo, sLo) < 0 ? 1 : 0);
+				if (chunkSize + 4 > chunk.length) {
+					chunk = Arrays.copyOf(chunk, chunk.length * 2);
+				}
+				chunk[chunkSize++] = sHi;
+				chunk[chunkSize++] = sLo;
+				if (dHi == 0 && Long.compareUnsigned(dLo, room) < 0) {	//剩余部分放得下
+					chunk[chunkSize++] = eHi;
+					chunk[chunkSize++] = eLo;
+					room -= dLo + 1;
+					if (room == 0) {
+						result.add(new IpRangeSet(ipV6, Arrays.copyOf(chunk, chunkSize)));
+						chunkSize = 0;
+						room = limit;
+					}
+					break;
+				}
+				//只放得下room个,当前集合已满
+				long pieceLo = sLo + room - 1;
+				long pieceHi = Long.compareUnsigned(pieceLo, sLo) < 0 ? sHi + 1 : sHi;
+				chunk[chunkSize++] = pieceHi;
+				chunk[chunkSize++] = pieceLo;
+				result.add(new IpRangeSet(ipV6, Arrays.copyOf(chunk, chunkSize)));
+				chunkSize = 0;
+				sLo = pieceLo + 1;
+				sHi = sLo == 0 ? pieceHi + 1 : pieceHi;
+				room = limit;
+			}
+		}
+		if (chunkSize > 0) {
+			result.add(new IpRangeSet(ipV6, Arrays.copyOf(chunk, chunkSize)));
+		}
+		return result;
+	}
+
+	/**
+	 * 转为覆盖相同地址的最少的CIDR
+	 * @return 如192.168.1.0/24、2001:db8::/32
+	 */
+	public List<String> toCidrs() {
+		List<String> result = new ArrayList<>();
+		forEachCidr((hi, lo, prefixLength) -> result.add(format(hi, lo) + "/" + prefixLength));
+		return result;
+	}
+
+	/**
+	 * 按顺序遍历覆盖相同地址的最少的CIDR,供{@link IpRadixTrie}等同包的类使用
+	 */
+	void forEachCidr(CidrConsumer consumer) {
+		int bits = ipV6 ? 128 : 32;
+		for (int i = 0; i < rangeCount(); i++) {
+			long sHi = bounds[i * 4], sLo = bounds[i * 4 + 1];
+			long eHi = bounds[i * 4 + 2], eLo = bounds[i * 4 + 3];
+			while (true) {
+				//块大小受起始地址对齐和剩余长度两方面限制
+				int alignment = sLo != 0 ? Long.numberOfTrailingZeros(sLo) : (sHi != 0 ? 64 + Long.numberOfTrailingZeros(sHi) : 128);
+				long dLo = eLo - sLo;
+				long dHi = eHi - sHi - (Long.compareUnsigned(eLo, sLo) < 0 ? 1 : 0);
+				long nLo = dLo + 1;
+				long nHi = nLo == 0 ? dHi + 1 : dHi;
+				int length = (nHi == 0 && nLo == 0) ? 128 : 127 - (nHi != 0 ? Long.numberOfLeadingZeros(nHi) : 64 + Long.numberOfLeadingZeros(nLo));
+				int hostBits = Math.min(Math.min(alignment, length), bits);
+				consumer.accept(sHi, sLo, bits - hostBits);
+				//块的最后一个地址
+				long lastLo = hostBits >= 64 ? sLo | -1L : sLo | ((1L << hostBits) - 1);
+				long lastHi = hostBits >= 128 ? -1L : (hostBits > 64 ? sHi | ((1L << (hostBits - 64)) - 1) : sHi);
+				if (lastHi == eHi && lastLo == eLo) {
+					break;
+				}
+				sLo = lastLo + 1;
+				sHi = sLo == 0 ? lastHi + 1 : lastHi;
+			}
+		}
+	}
+
+	/**
+	 * 接收一个CIDR,ipv4的地址在低32位
+	 */
+	interface CidrConsumer {
+		void accept(long hi, long lo, int prefixLength);
+	}
+
+	/**
+	 * 转为IpValidator支持的网段格式
+	 * <p>
+	 * ipv4按C段拆分,如192.168.1.1-20,网段只包含1-254,.0和.255作为单个地址单独列出(IpValidator的网段不包含这两个值);
+	 * ipv6按最后一组拆分,如2001::1:0-ffff;单个地址不带-
+	 * </p>
+	 * @return
+	 */
+	public List<String> toRangeStrings() {
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < rangeCount(); i++) {
+			long sHi = bounds[i * 4], sLo = bounds[i * 4 + 1];
+			long eHi = bounds[i * 4 + 2], eLo = bounds[i * 4 + 3];
+			while (true) {
+				//最后一节(ipv4为8位,ipv6为16位)的最大值
+				long blockLast = sLo | (ipV6 ? 0xFFFFL : 0xFFL);
+				boolean last = sHi == eHi && Long.compareUnsigned(blockLast, eLo) >= 0;
+				long pieceLo = last ? eLo : blockLast;
+				if (!ipV6) {
+					addV4Range(result, sLo, pieceLo);
+				} else if (pieceLo == sLo) {
+					result.add(format(sHi, sLo));
+				} else {
+					result.add(formatV6Prefix(sHi, sLo) + Long.toHexString(sLo & 0xFFFF) + "-" + Long.toHexString(pieceLo & 0xFFFF));
+				}
+				if (last) {
+					break;
+				}
+				sLo = pieceLo + 1;
+				if (sLo == 0) {
+					sHi++;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IpRangeSet)) {
+			return false;
+		}
+		IpRangeSet other = (IpRangeSet) obj;
+		return ipV6 == other.ipV6 && Arrays.equals(bounds, other.bounds);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Boolean.hashCode(ipV6) + Arrays.hashCode(bounds);
+	}
+
+	@Override
+	public String toString() {
+		return toRangeStrings().toString();
+	}
+
+	/*===========================内部方法===========================*/
+
+	private void checkFamily(IpRangeSet other) {
+		if (ipV6 != other.ipV6) {
+			throw new IllegalArgumentException("ipv4和ipv6不能一起运算");
+		}
+	}
+
+	/**
+	 * 排序并合并重叠或相邻的区间
+	 */
+	private static IpRangeSet normalize(boolean ipV6, long[][] ranges) {
+		if (ranges.length == 0) {
+			return empty(ipV6);
+		}
+		Arrays.sort(ranges, RANGE_ORDER);
+		long[] result = new long[ranges.length * 4];
+		int size = 0;
+		long sHi = ranges[0][0], sLo = ranges[0][1], eHi = ranges[0][2], eLo = ranges[0][3];
+		for (int i = 1; i < ranges.length; i++) {
+			long[] range = ranges[i];
+			//end+1,end为最大地址时所有后续区间都能合并
+			long nextLo = eLo + 1;
+			long nextHi = nextLo == 0 ? eHi + 1 : eHi;
+			boolean endIsMax = eLo == -1L && eHi == -1L;
+			if (endIsMax || compare(range[0], range[1], nextHi, nextLo) <= 0) {
+				if (compare(range[2], range[3], eHi, eLo) > 0) {
+					eHi = range[2];
+					eLo = range[3];
+				}
+			} else {
+				result[size++] = sHi;
+				result[size++] = sLo;
+				result[size++] = eHi;
+				result[size++] = eLo;
+				sHi = range[0];
+				sLo = range[1];
+				eHi = range[2];
+				eLo = range[3];
+			}
+		}
+		result[size++] = sHi;
+		result[size++] = sLo;
+		result[size++] = eHi;
+		result[size++] = eLo;
+		return new IpRangeSet(ipV6, Arrays.copyOf(result, size));
+	}
+
+	private static final Comparator<long[]> RANGE_ORDER = (a, b) -> compare(a[0], a[1], b[0], b[1]);
+
+	/**
+	 * 比较两个128位无符号数
+	 */
+	private static int compare(long aHi, long aLo, long bHi, long bLo) {
+		int c = Long.compareUnsigned(aHi, bHi);
+		return c != 0 ? c : Long.compareUnsigned(aLo, bLo);
+	}
+
+	private static BigInteger toBigInteger(long hi, long lo) {
+		byte[] bytes = new byte[17];
+		for (int i = 0; i < 8; i++) {
+			bytes[1 + i] = (byte) (hi >>> (56 - 8 * i));
+			bytes[9 + i] = (byte) (lo >>> (56 - 8 * i));
+		}
+		return new BigInteger(bytes);
+	}
+
+	/**
+	 * 解析ipv4分节格式,每节可以是数字、a-b或者*(1-255)
+	 */
+	private static IpRangeSet parseV4Segments(String ip) {
+		String[] groups = ip.split("\\.", -1);
+		if (groups.length != 4) {
+			throw new IllegalArgumentException("不是ipv4地址或网段:" + ip);
+		}
+		int[][] octets = new int[4][];
+		for (int i = 0; i < 4; i++) {
+			octets[i] = parseOctetRange(groups[i], ip);
+		}
+		List<long[]> ranges = new ArrayList<>();
+		for (int a = octets[0][0]; a <= octets[0][1]; a++) {
+			for (int b = octets[1][0]; b <= octets[1][1]; b++) {
+				for (int c = octets[2][0]; c <= octets[2][1]; c++) {
+					long prefix = ((long) a << 24) | (b << 16) | (c << 8);
+					ranges.add(new long[]{0, prefix | octets[3][0], 0, prefix | octets[3][1]});
+				}
+			}
+		}
+		return normalize(false, ranges.toArray(new long[0][]));
+	}
+
+	private static int[] parseOctetRange(String group, String ip) {
+		if ("*".equals(group)) {
+			return new int[]{1, 255};
+		}
+		int dash = group.indexOf('-');
+		int min = parseOctet(dash >= 0 ? group.substring(0, dash) : group, ip);
+		int max = dash >= 0 ? parseOctet(group.substring(dash + 1), ip) : min;
+		if (min > max) {
+			throw new IllegalArgumentException("最小值不能大于最大值:" + ip);
+		}
+		return new int[]{min, max};
+	}
+
+	private static int parseOctet(String value, String ip) {
+		if (value.isEmpty() || value.length() > 3) {
+			throw new IllegalArgumentException("不是ipv4地址或网段:" + ip);
+		}
+		int octet = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("不是ipv4地址或网段:" + ip);
+			}
+			octet = octet * 10 + (c - '0');
+		}
+		if (octet > 255) {
+			throw new IllegalArgumentException("不是ipv4地址或网段:" + ip);
+		}
+		return octet;
+	}
+
+	/**
+	 * 解析单个ipv4地址
+	 */
+	static long parseV4(String ip) {
+		String[] groups = ip.trim().split("\\.", -1);
+		if (groups.length != 4) {
+			throw new IllegalArgumentException("不是ipv4地址:" + ip);
+		}
+		long value = 0;
+		for (String group : groups) {
+			value = (value << 8) | parseOctet(group, ip);
+		}
+		return value;
+	}
+
+	/**
+	 * 解析ipv6地址、xx-xx网段(最后一组)、*网段(最后一组)或者完整的起止地址
+	 */
+	private static IpRangeSet parseV6Range(String ip) {
+		int colon = ip.lastIndexOf(':');
+		String last = ip.substring(colon + 1);
+		String prefix = ip.substring(0, colon + 1);
+		int dash = ip.indexOf('-');
+		if (dash >= 0 && ip.indexOf(':', dash) >= 0) {	//完整的起止地址
+			long[] start = parseV6(ip.substring(0, dash));
+			long[] end = parseV6(ip.substring(dash + 1));
+			if (compare(start[0], start[1], end[0], end[1]) > 0) {
+				throw new IllegalArgumentException("最小值不能大于最大值:" + ip);
+			}
+			return new IpRangeSet(true, new long[]{start[0], start[1], end[0], end[1]});
+		}
+		String from;
+		String to;
+		if ("*".equals(last)) {
+			from = "0";
+			to = "ffff";
+		} else if (last.indexOf('-') >= 0) {
+			from = last.substring(0, last.indexOf('-'));
+			to = last.substring(last.indexOf('-') + 1);
+		} else {
+			long[] address = parseV6(ip);
+			return new IpRangeSet(true, new long[]{address[0], address[1], address[0], address[1]});
+		}
+		long[] start = parseV6(prefix + from);
+		long[] end = parseV6(prefix + to);
+		if (compare(start[0], start[1], end[0], end[1]) > 0) {
+			throw new IllegalArgumentException("最小值不能大于最大值:" + ip);
+		}
+		return new IpRangeSet(true, new long[]{start[0], start[1], end[0], end[1]});
+	}
+
+	private static IpRangeSet parseCidr(String address, String prefixLength, boolean v6) {
+		int bits = v6 ? 128 : 32;
+		int prefix;
+		try {
+			prefix = Integer.parseInt(prefixLength);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("前缀长度不合法:" + prefixLength);
+		}
+		if (prefix < 0 || prefix > bits) {
+			throw new IllegalArgumentException("前缀长度不合法:" + prefixLength);
+		}
+		long hi;
+		long lo;
+		if (v6) {
+			long[] value = parseV6(address);
+			hi = value[0];
+			lo = value[1];
+		} else {
+			hi = 0;
+			lo = parseV4(address);
+		}
+		int hostBits = bits - prefix;
+		long hostLo = hostBits >= 64 ? -1L : (1L << hostBits) - 1;
+		long hostHi = hostBits >= 128 ? -1L : (hostBits > 64 ? (1L << (hostBits - 64)) - 1 : 0);
+		if (!v6) {
+			hostLo &= IPV4_MAX;
+		}
+		return new IpRangeSet(v6, new long[]{hi & ~hostHi, lo & ~hostLo, hi | hostHi, lo | hostLo});
+	}
+
+	/**
+	 * 解析单个ipv6地址,支持::缩写和末尾嵌入ipv4
+	 * @return {高64位, 低64位}
+	 */
+	static long[] parseV6(String ip) {
+		ip = ip.trim();
+		int[] groups = new int[8];
+		int doubleColon = ip.indexOf("::");
+		if (doubleColon >= 0 && ip.indexOf("::", doubleColon + 1) >= 0) {
+			throw new IllegalArgumentException("不是ipv6地址:" + ip);
+		}
+		String head = doubleColon >= 0 ? ip.substring(0, doubleColon) : ip;
+		String tail = doubleColon >= 0 ? ip.substring(doubleColon + 2) : "";
+		int[] headGroups = parseV6Groups(head, ip);
+		int[] tailGroups = parseV6Groups(tail, ip);
+		int count = headGroups.length + tailGroups.length;
+		if (doubleColon >= 0 ? count > 7 : count != 8) {
+			throw new IllegalArgumentException("不是ipv6地址:" + ip);
+		}
+		System.arraycopy(headGroups, 0, groups, 0, headGroups.length);
+		System.arraycopy(tailGroups, 0, groups, 8 - tailGroups.length, tailGroups.length);
+		long hi = 0;
+		long lo = 0;
+		for (int i = 0; i < 4; i++) {
+			hi = (hi << 16) | groups[i];
+			lo = (lo << 16) | groups[i + 4];
+		}
+		return new long[]{hi, lo};
+	}
+
+	private static int[] parseV6Groups(String part, String ip) {
+		if (part.isEmpty()) {
+			return new int[0];
+		}
+		String[] items = part.split(":", -1);
+		boolean embeddedV4 = items[items.length - 1].indexOf('.') >= 0;
+		int[] groups = new int[embeddedV4 ? items.length + 1 : items.length];
+		for (int i = 0; i < items.length; i++) {
+			String item = items[i];
+			if (embeddedV4 && i == items.length - 1) {
+				long v4 = parseV4(item);
+				groups[i] = (int) (v4 >>> 16);
+				groups[i + 1] = (int) (v4 & 0xFFFF);
+				break;
+			}
+			if (item.isEmpty() || item.length() > 4) {
+				throw new IllegalArgumentException("不是ipv6地址:" + ip);
+			}
+			int value = 0;
+			for (int j = 0; j < item.length(); j++) {
+				int digit = Character.digit(item.charAt(j), 16);
+				if (digit < 0) {
+					throw new IllegalArgumentException("不是ipv6地址:" + ip);
+				}
+				value = value << 4 | digit;
+			}
+			groups[i] = value;
+		}
+		return groups;
+	}
+
+	/**
+	 * 添加同一C段内的区间[start,end],网段只包含1-254,.0和.255单独列出
+	 */
+	private static void addV4Range(List<String> result, long start, long end) {
+		String prefix = formatV4Prefix(start);
+		int first = (int) (start & 0xFF);
+		int last = (int) (end & 0xFF);
+		if (first == 0) {
+			result.add(prefix + 0);
+			first = 1;
+		}
+		int rangeLast = Math.min(last, 254);
+		if (first == rangeLast) {
+			result.add(prefix + first);
+		} else if (first < rangeLast) {
+			result.add(StringUtils.concat(prefix, first, '-', rangeLast));
+		}
+		if (last == 255) {
+			result.add(prefix + 255);
+		}
+	}
+
+	private String format(long hi, long lo) {
+		if (!ipV6) {
+			return StringUtils.concat(formatV4Prefix(lo), lo & 0xFF);
+		}
+		int[] groups = groups(hi, lo);
+		return compress(groups, 8);
+	}
+
+	/**
+	 * 如192.168.1.
+	 */
+	private static String formatV4Prefix(long value) {
+		return StringUtils.concat(value >>> 24 & 0xFF, '.', value >>> 16 & 0xFF, '.', value >>> 8 & 0xFF, '.');
+	}
+
+	/**
+	 * 前7组,以冒号结尾,如2001::1:
+	 */
+	private static String formatV6Prefix(long hi, long lo) {
+		String prefix = compress(groups(hi, lo), 7);
+		return prefix.endsWith("::") ? prefix : prefix + ":";
+	}
+
+	private static int[] groups(long hi, long lo) {
+		int[] groups = new int[8];
+		for (int i = 0; i < 4; i++) {
+			groups[i] = (int) (hi >>> (48 - 16 * i)) & 0xFFFF;
+			groups[i + 4] = (int) (lo >>> (48 - 16 * i)) & 0xFFFF;
+		}
+		return groups;
+	}
+
+	/**
+	 * 前count组按RFC 5952缩写:最长的连续两组以上的0替换为::
+	 */
+	private static String compress(int[] groups, int count) {
+		int bestStart = -1;
+		int bestLength = 1;
+		for (int i = 0; i < count; ) {
+			if (groups[i] != 0) {
+				i++;
+				continue;
+			}
+			int j = i;
+			while (j < count && groups[j] == 0) {
+				j++;
+			}
+			if (j - i > bestLength) {
+				bestStart = i;
+				bestLength = j - i;
+			}
+			i = j;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i == bestStart) {
+				sb.append("::");
+				i += bestLength - 1;
+				continue;
+			}
+			if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+				sb.append(':');
+			}
+			sb.append(Integer.toHexString(groups[i]));
+		}
+		return sb.toString();
+	}
+}
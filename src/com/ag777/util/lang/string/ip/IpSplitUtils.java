@@ -1,9 +1,10 @@
 package com.ag777.util.lang.string.ip;
 
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,9 +17,13 @@ import com.ag777.util.lang.collection.ListUtils;
  * <p>
  *  ip列表拆分,整合成网段的工具
  * </p>
+ * <p>
+ * [修改]split不再把网段展开成单个ip再排序、排除,改为用{@link IpRangeSet}做区间的合并、排除和按个数拆分,
+ * 复杂度只与网段个数有关;ipv6改为按数值排序,并像ipv4一样整合成网段(如2001::1:1-ff)
+ * </p>
  *
  * @author ag777
- * @version create on 2019年04月09日,last modify at 2019年06月10日
+ * @version create on 2019年04月09日,last modify at 2026年10月18日
  */
 public class IpSplitUtils {
 
@@ -54,65 +59,86 @@ public class IpSplitUtils {
 	 * @return ip(网段)列表
 	 */
 	public static List<String> split(Stream<String> ips, List<String> excludeIpList, int limit) {
-		List<String> otherList = ListUtils.newArrayList();	//存非ip字符串(无法拆分)
-		List<String> ipV6List = ListUtils.newArrayList();
-		//先处理ipv4的网段,转化为Long型直接比较大小进行排序
-		List<String> ipList = ips
-				.filter(ip->{	//过滤ipv4以外的地址
-					boolean isRange = IpValidator.isIpOrRange(ip);
-					if(!isRange) {
-						if(IpValidator.isIpV6OrRange(ip)) {
-							ipV6List.add(ip);
-						} else {
-							otherList.add(ip);
-						}
-					}
-
-					return isRange;
-				})
-				.map(IpValidator::splitNetSegment)	//每一项转化为单个ip列表
-				.flatMap(List::stream)	//扁平化
-				.distinct()	//排重
-				//将IP值转换为long值再做大小的比较
-				.map(ip->{
-                    String[] group = ip.split("\\.");
-                    return (Long.parseLong(group[0]) << 24) + (Long.parseLong(group[1]) << 16) + (Long.parseLong(group[2]) << 8) + (Long.parseLong(group[3]));
-				})
-				.sorted(Comparator.comparingLong(i->i))	//排序，从小到大
-				.map(ip->StringUtils.concat((ip/256/256/256%256), '.', (ip/256/256%256), '.', (ip/256%256), '.', (ip%256)))
-				.collect(Collectors.toList());
+		if(limit <= 0) {
+			throw new IllegalArgumentException("每个列表的最大限制数必须大于0:"+limit);
+		}
+		List<IpRangeSet> ipV4Sets = ListUtils.newArrayList();
+		List<IpRangeSet> ipV6Sets = ListUtils.newArrayList();
+		Set<String> otherSet = new LinkedHashSet<>();	//存非ip字符串(无法拆分),保持原顺序排重
+		ips.forEach(ip->classify(ip, ipV4Sets, ipV6Sets, otherSet));
+		//合并成排序后的区间,不展开成单个ip
+		IpRangeSet ipV4 = IpRangeSet.union(ipV4Sets, false);
+		IpRangeSet ipV6 = IpRangeSet.union(ipV6Sets, true);
 
-		//再处理ipv6,根据字符串默认排序方法进行排序
-		ipList.addAll(
-				ipV6List.stream()
-						.map(IpValidator::splitNetSegment)	//每一项转化为单个ip列表
-						.flatMap(List::stream)	//扁平化
-						.distinct()	//排重
-						.sorted()	//排序，从小到大
-						.collect(Collectors.toList()));
-
-		/*其余的ip(单个ip或其它)，都认为是单个ip单独加在列表末尾*/
-		for (String other : otherList) {
-			if(!ipList.contains(other)) {	//排重添加
-				ipList.add(other);
+		if(!ListUtils.isEmpty(excludeIpList)) {
+			List<IpRangeSet> excludeV4 = ListUtils.newArrayList();
+			List<IpRangeSet> excludeV6 = ListUtils.newArrayList();
+			Set<String> excludeOthers = new LinkedHashSet<>();
+			for (String exclude : excludeIpList) {
+				classify(exclude, excludeV4, excludeV6, excludeOthers);
 			}
+			ipV4 = ipV4.subtract(IpRangeSet.union(excludeV4, false));
+			ipV6 = ipV6.subtract(IpRangeSet.union(excludeV6, true));
+			otherSet.removeAll(excludeOthers);
 		}
 
-		/*清空临时列表的数据,这步可以不做*/
-		otherList.clear();
+		/*按ipv4、ipv6、其它的顺序依次填满每个列表,每个列表中的区间整合成网段*/
+		List<List<String>> chunkList = ListUtils.newArrayList();
+		long room = 0;	//当前列表剩余的空位
+		for (IpRangeSet set : Arrays.asList(ipV4, ipV6)) {
+			List<IpRangeSet> pieces = set.split(room > 0 ? room : limit, limit);
+			for (IpRangeSet piece : pieces) {
+				if(room == 0) {
+					chunkList.add(ListUtils.newArrayList());
+					room = limit;
+				}
+				chunkList.get(chunkList.size()-1).addAll(piece.toRangeStrings());
+				room -= piece.size().longValue();
+			}
+		}
+		for (String other : otherSet) {
+			if(room == 0) {
+				chunkList.add(ListUtils.newArrayList());
+				room = limit;
+			}
+			chunkList.get(chunkList.size()-1).add(other);
+			room--;
+		}
+		return chunkList.stream()
+				.map(chunk->ListUtils.toString(chunk, ","))
+				.collect(Collectors.toList());
+	}
 
-		if(!ListUtils.isEmpty(excludeIpList)) {
-			ipList.removeAll(
-					excludeIpList.stream()
-							.map(IpValidator::splitNetSegment)
-							.flatMap(List::stream)
-							.distinct()
-							.collect(Collectors.toList()));
+	/**
+	 * 按ipv4、ipv6和其它分类,正则不匹配的单个ip(如192.168.1.255)也按ip处理,与展开*得到的ip一致
+	 */
+	private static void classify(String ip, List<IpRangeSet> ipV4Sets, List<IpRangeSet> ipV6Sets, Set<String> otherSet) {
+		if(IpValidator.isIpOrRange(ip)) {
+			ipV4Sets.add(IpRangeSet.parse(ip));
+		} else if(IpValidator.isIpV6OrRange(ip)) {
+			ipV6Sets.add(IpRangeSet.parse(ip));
+		} else {
+			IpRangeSet single = parseSingle(ip);
+			if(single == null) {
+				otherSet.add(ip);
+			} else {
+				(single.isIpV6() ? ipV6Sets : ipV4Sets).add(single);
+			}
 		}
+	}
 
-		return ListUtils.splitList(ipList, limit).stream()	//根据需求分割列表
-				.map(IpSplitUtils::integration)	//整合列表项，将可以合并成网段的ip进行合并
-				.collect(Collectors.toList());
+	/**
+	 * 尝试解析为单个ip,不是单个ip时返回null
+	 */
+	private static IpRangeSet parseSingle(String ip) {
+		if(ip == null || ip.indexOf('-') >= 0 || ip.indexOf('*') >= 0 || ip.indexOf('/') >= 0) {
+			return null;
+		}
+		try {
+			return IpRangeSet.parse(ip);
+		} catch(IllegalArgumentException e) {
+			return null;
+		}
 	}
 
 
@@ -1,28 +1,80 @@
 package com.ag777.util.lang.thread;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Semaphore;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 键值锁
  * <p>针对不同的键进行锁的操作，对网上的代码进行调整的来的工具类，可重入
- * 
+ * <p>[修改]改为分段锁实现:键根据hashCode映射到固定数量的ReentrantLock上,
+ * 无竞争时加锁只有一次CAS,不分配任何对象,也不需要ThreadLocal查找。
+ * 代价是不同的键可能映射到同一个分段上而互相等待,分段数越大冲突越少
+ * <p>注意:同时持有多个键时应使用{@link #lock(Object[])},它按分段的固定顺序加锁,不会死锁;
+ * 逐个调用{@link #lock(Object)}嵌套加锁时,两个线程的加锁顺序相反(分段冲突也算)就可能死锁
+ * <p>[新增]通过{@link #instrumented(int, int)}创建的实例会记录竞争统计(热点键、等待/持有时间),
+ * 见{@link KeyLockStats};普通实例的统计字段为null,热路径上只多一次null判断
+ *
  * @param <K>
  * @author https://www.cnblogs.com/klbc/p/9500947.html
  */
 public class KeyLock<K> {
-    // 保存所有锁定的KEY及其信号量
-    private final ConcurrentMap<K, Semaphore> map = new ConcurrentHashMap<K, Semaphore>();
-    // 保存每个线程锁定的KEY及其锁定计数
-    private final ThreadLocal<Map<K, LockInfo>> local = new ThreadLocal<Map<K, LockInfo>>() {
-        @Override
-        protected Map<K, KeyLock.LockInfo> initialValue() {
-            return new HashMap<>();
+    // 默认分段数
+    private static final int DEFAULT_STRIPES = 1024;
+
+    // 分段锁
+    private final ReentrantLock[] locks;
+    private final int mask;
+    // 竞争统计,未开启时为null
+    private final KeyLockStats<K> stats;
+    // 各分段最外层加锁的时间,只由持有该分段的线程读写,未开启统计时为null
+    private final long[] acquiredAt;
+
+    public KeyLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes 分段数,会向上取整为2的幂
+     */
+    public KeyLock(int stripes) {
+        this(stripes, null);
+    }
+
+    private KeyLock(int stripes, KeyLockStats<K> stats) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("分段数必须大于0:" + stripes);
+        }
+        int size = 1;
+        while (size < stripes && size < (1 << 30)) {
+            size <<= 1;
+        }
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
         }
-    };
+        mask = size - 1;
+        this.stats = stats;
+        acquiredAt = stats == null ? null : new long[size];
+    }
+
+    /**
+     * 创建记录竞争统计的键值锁
+     * @param stripes 分段数,会向上取整为2的幂
+     * @param hotKeys 记录的热点键个数
+     * @return 键值锁,通过{@link #stats()}获取统计
+     */
+    public static <K> KeyLock<K> instrumented(int stripes, int hotKeys) {
+        return new KeyLock<>(stripes, new KeyLockStats<>(hotKeys));
+    }
+
+    /**
+     * @return 竞争统计,未开启时返回null
+     */
+    public KeyLockStats<K> stats() {
+        return stats;
+    }
 
     /**
      * 锁定key，其他等待此key的线程将进入等待，直到调用{@link #unlock(K)}
@@ -34,19 +86,37 @@ public class KeyLock<K> {
     public void lock(K key) throws InterruptedException {
         if (key == null)
             return;
-        LockInfo info = local.get().get(key);
-        if (info == null) {
-            Semaphore current = new Semaphore(1);
-            current.acquire();  //[修改]我们需要能控制中断线程,参考:https://www.cnblogs.com/klbc/p/9500947.html
-            //[补充]previous等待上一个锁释放,这里没有被release
-            Semaphore previous = map.put(key, current);
-            if (previous != null)
-                previous.acquire();
-//                previous.acquireUninterruptibly();
-            local.get().put(key, new LockInfo(current));
-        } else {
-            info.lockCount++;
+        int stripe = stripe(key);
+        if (stats == null) {
+            locks[stripe].lockInterruptibly();
+            return;
         }
+        long begin = System.nanoTime();
+        locks[stripe].lockInterruptibly();
+        acquired(stripe, key, begin);
+    }
+
+    /**
+     * 尝试锁定key，在超时时间内获取不到锁则返回false
+     *
+     * @param key
+     * @param timeout 超时时间
+     * @param unit 时间单位
+     * @return 是否锁定成功,key为null时返回true
+     */
+    public boolean tryLock(K key, long timeout, TimeUnit unit) throws InterruptedException {
+        if (key == null)
+            return true;
+        int stripe = stripe(key);
+        if (stats == null) {
+            return locks[stripe].tryLock(timeout, unit);
+        }
+        long begin = System.nanoTime();
+        if (!locks[stripe].tryLock(timeout, unit)) {
+            return false;
+        }
+        acquired(stripe, key, begin);
+        return true;
     }
 
     /**
@@ -63,46 +133,220 @@ public class KeyLock<K> {
     public void unlock(K key) {
         if (key == null)
             return;
-        LockInfo info = local.get().get(key);
-        if (info != null && --info.lockCount == 0) {
-            info.current.release();
-            map.remove(key, info.current);
-            local.get().remove(key);
+        int stripe = stripe(key);
+        ReentrantLock lock = locks[stripe];
+        if (lock.isHeldByCurrentThread()) {
+            releasing(stripe);
+            lock.unlock();
         }
     }
 
     /**
      * 锁定多个key
-     * 建议在调用此方法前先对keys进行排序，使用相同的锁定顺序，防止死锁发生
+     * [修改]按分段下标排序去重后加锁,不论传入顺序如何,所有线程的加锁顺序都相同,不会死锁
      * @param keys
      */
     public void lock(K[] keys) throws InterruptedException {
         if (keys == null)
             return;
-        for (K key : keys) {
-            lock(key);
+        int[] stripes = stripes(keys);
+        long begin = stats == null ? 0 : System.nanoTime();
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                locks[stripes[locked]].lockInterruptibly();
+            }
+        } catch (InterruptedException e) {
+            release(stripes, locked);
+            throw e;
+        }
+        if (stats != null) {
+            acquired(stripes, keys, begin);
+        }
+    }
+
+    /**
+     * 尝试锁定多个key，在超时时间内没有全部获取到则释放已获取的锁并返回false
+     * @param keys
+     * @param timeout 超时时间
+     * @param unit 时间单位
+     * @return 是否全部锁定成功
+     */
+    public boolean tryLock(K[] keys, long timeout, TimeUnit unit) throws InterruptedException {
+        if (keys == null)
+            return true;
+        int[] stripes = stripes(keys);
+        long begin = System.nanoTime();
+        long deadline = begin + unit.toNanos(timeout);
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                long remaining = deadline - System.nanoTime();
+                if (!locks[stripes[locked]].tryLock(remaining, TimeUnit.NANOSECONDS)) {
+                    release(stripes, locked);
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            release(stripes, locked);
+            throw e;
+        }
+        if (stats != null) {
+            acquired(stripes, keys, begin);
         }
+        return true;
     }
 
     /**
-     * 释放多个key
+     * 释放多个key,需要和{@link #lock(Object[])}成对使用
      * @param keys
      */
     public void unlock(K[] keys) {
         if (keys == null)
             return;
+        int[] stripes = stripes(keys);
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            ReentrantLock lock = locks[stripes[i]];
+            if (lock.isHeldByCurrentThread()) {
+                releasing(stripes[i]);
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 计算key对应的分段下标
+     */
+    int stripe(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+
+    /**
+     * 计算多个key对应的分段下标,排序并去重,null忽略
+     */
+    private int[] stripes(K[] keys) {
+        int[] stripes = new int[keys.length];
+        int size = 0;
         for (K key : keys) {
-            unlock(key);
+            if (key != null) {
+                stripes[size++] = stripe(key);
+            }
+        }
+        Arrays.sort(stripes, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || stripes[distinct - 1] != stripes[i]) {
+                stripes[distinct++] = stripes[i];
+            }
         }
+        return distinct == stripes.length ? stripes : Arrays.copyOf(stripes, distinct);
     }
 
-    private static class LockInfo {
-        private final Semaphore current;
-        private int lockCount;
+    /**
+     * 单个分段加锁成功后记录统计,重入不计
+     */
+    private void acquired(int stripe, K key, long begin) {
+        if (locks[stripe].getHoldCount() == 1) {
+            stats.onAcquire(key, System.nanoTime() - begin);
+            acquiredAt[stripe] = System.nanoTime();	//统计本身的耗时不计入持有时间
+        }
+    }
+
+    /**
+     * 多个分段加锁成功后记录统计,每个非重入的key都以整组的等待时间记一次
+     */
+    private void acquired(int[] stripes, K[] keys, long begin) {
+        long wait = System.nanoTime() - begin;
+        for (K key : keys) {
+            if (key != null && locks[stripe(key)].getHoldCount() == 1) {
+                stats.onAcquire(key, wait);
+            }
+        }
+        long now = System.nanoTime();
+        for (int stripe : stripes) {
+            if (locks[stripe].getHoldCount() == 1) {
+                acquiredAt[stripe] = now;
+            }
+        }
+    }
+
+    /**
+     * 分段最外层释放前记录持有时间
+     */
+    private void releasing(int stripe) {
+        if (stats != null && locks[stripe].getHoldCount() == 1) {
+            stats.onRelease(System.nanoTime() - acquiredAt[stripe]);
+        }
+    }
+
+    /**
+     * 倒序释放前count个分段
+     */
+    private void release(int[] stripes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+
+    /**
+     * 无竞争和有竞争两种情况下lock/unlock的耗时
+     */
+    public static void main(String[] args) throws InterruptedException {
+        KeyLock<Long> keyLock = new KeyLock<>();
+        int n = 10_000_000;
+        for (int round = 0; round < 2; round++) {	//第一轮预热
+            long start = System.nanoTime();
+            for (long i = 0; i < n; i++) {
+                keyLock.lock(i);
+                keyLock.unlock(i);
+            }
+            System.out.printf("无竞争: %.1f ns/op%n", (double) (System.nanoTime() - start) / n);
+        }
+
+        int threads = 4;
+        int perThread = 1_000_000;
+        long[] counter = new long[1];
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] list = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            list[t] = new Thread(() -> {
+                try {
+                    go.await();
+                    for (int i = 0; i < perThread; i++) {
+                        keyLock.lock(42L);
+                        try {
+                            counter[0]++;
+                        } finally {
+                            keyLock.unlock(42L);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            list[t].start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread thread : list) {
+            thread.join();
+        }
+        System.out.printf("%d线程竞争同一个key: %.1f ns/op, 计数%d(应为%d)%n",
+                threads, (double) (System.nanoTime() - start) / threads / perThread, counter[0], (long) threads * perThread);
 
-        private LockInfo(Semaphore current) {
-            this.current = current;
-            this.lockCount = 1;
+        KeyLock<Long> instrumented = KeyLock.instrumented(1024, 10);
+        for (int round = 0; round < 2; round++) {
+            long begin = System.nanoTime();
+            for (long i = 0; i < n; i++) {
+                long key = i % 100 < 50 ? i % 5 : i;	//一半的加锁集中在5个热点键上
+                instrumented.lock(key);
+                instrumented.unlock(key);
+            }
+            System.out.printf("开启统计: %.1f ns/op%n", (double) (System.nanoTime() - begin) / n);
         }
+        System.out.println(instrumented.stats().snapshot());
     }
 }
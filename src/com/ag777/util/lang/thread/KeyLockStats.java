@@ -0,0 +1,336 @@
+package com.ag777.util.lang.thread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link KeyLock}的竞争统计
+ * <p>
+ * 通过{@link KeyLock#instrumented(int, int)}开启,记录:
+ * <ul>
+ * <li>加锁次数</li>
+ * <li>等待时间和持有时间的直方图(按2的幂分桶,单位纳秒)</li>
+ * <li>加锁次数最多的前N个键(Space-Saving算法,内存固定为N个键),以及这些键的累计等待时间</li>
+ * </ul>
+ * 只统计最外层的加锁,重入不计;多键加锁时每个键都记为一次,等待时间为整组的等待时间<br>
+ * 新键加入热点列表时只尝试加锁,其它线程正在调整列表时本次加锁不计入热点统计(总次数和直方图仍然计入);
+ * 列表满时随机抽样{@link #EVICTION_SAMPLES}个键淘汰其中计数最小的,不扫描整个列表,
+ * 因此热点键的计数是近似值,键数很多时统计本身不会成为竞争点<br>
+ * 通过{@link #snapshot()}定期拉取数据推送到监控系统
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <K> 键类型
+ */
+public class KeyLockStats<K> {
+
+	/* 直方图桶数,第i个桶统计[2^(i-1), 2^i)纳秒,第0个桶统计0纳秒 */
+	public static final int BUCKETS = 64;
+	/* 列表满时抽样的键个数,容量不超过该值时精确淘汰计数最小的键 */
+	public static final int EVICTION_SAMPLES = 8;
+
+	private final int capacity;
+	private final LongAdder acquires = new LongAdder();
+	private final LongAdder[] waitHistogram = newHistogram();
+	private final LongAdder[] holdHistogram = newHistogram();
+	private final ConcurrentMap<K, HotKeyCounter> hotKeys = new ConcurrentHashMap<>();
+	// 以下字段只在admissionLock内修改,slots与hotKeys中的计数器一一对应,用于O(1)随机抽样
+	private final ReentrantLock admissionLock = new ReentrantLock();
+	private final HotKeyCounter[] slots;
+	private int used;
+
+	/**
+	 * @param capacity 记录的热点键个数
+	 */
+	KeyLockStats(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("热点键个数必须大于0:" + capacity);
+		}
+		this.capacity = capacity;
+		this.slots = new HotKeyCounter[capacity];
+	}
+
+	/**
+	 * 记录一次加锁
+	 * @param key 键
+	 * @param waitNanos 等待时间
+	 */
+	void onAcquire(K key, long waitNanos) {
+		acquires.increment();
+		waitHistogram[bucket(waitNanos)].increment();
+		HotKeyCounter counter = hotKeys.get(key);
+		if (counter == null || counter.evicted) {	//已被淘汰的计数器不再累加
+			counter = admit(key);
+			if (counter == null) {
+				return;
+			}
+		}
+		counter.count.increment();
+		counter.waitNanos.add(waitNanos);
+	}
+
+	/**
+	 * 记录一次释放
+	 * @param holdNanos 持有时间
+	 */
+	void onRelease(long holdNanos) {
+		holdHistogram[bucket(holdNanos)].increment();
+	}
+
+	/**
+	 * @return 当前统计数据的快照
+	 */
+	public Snapshot<K> snapshot() {
+		List<HotKey<K>> top = new ArrayList<>(hotKeys.size());
+		for (Map.Entry<K, HotKeyCounter> entry : hotKeys.entrySet()) {
+			HotKeyCounter counter = entry.getValue();
+			top.add(new HotKey<>(entry.getKey(), counter.count.sum(), counter.error, counter.waitNanos.sum()));
+		}
+		//计数相同时误差小的更可信,排在前面
+		top.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : Long.compare(a.error, b.error));
+		return new Snapshot<>(acquires.sum(), sum(waitHistogram), sum(holdHistogram), Collections.unmodifiableList(top));
+	}
+
+	/**
+	 * 清空统计数据
+	 */
+	public void reset() {
+		admissionLock.lock();
+		try {
+			acquires.reset();
+			for (int i = 0; i < BUCKETS; i++) {
+				waitHistogram[i].reset();
+				holdHistogram[i].reset();
+			}
+			for (int i = 0; i < used; i++) {
+				slots[i].evicted = true;
+				slots[i] = null;
+			}
+			used = 0;
+			hotKeys.clear();
+		} finally {
+			admissionLock.unlock();
+		}
+	}
+
+	/**
+	 * 未被记录的键:未满时直接加入;满了则在抽样的键中替换计数最小的,新键继承其计数作为误差上限
+	 * @return 计数器,其它线程正在调整列表时返回null
+	 */
+	private HotKeyCounter admit(K key) {
+		if (!admissionLock.tryLock()) {
+			return null;
+		}
+		try {
+			HotKeyCounter counter = hotKeys.get(key);
+			if (counter != null) {
+				return counter;
+			}
+			int slot;
+			long inherited = 0;
+			if (used < capacity) {
+				slot = used++;
+			} else {
+				slot = 0;
+				long min = Long.MAX_VALUE;
+				boolean exact = capacity <= EVICTION_SAMPLES;
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < (exact ? capacity : EVICTION_SAMPLES); i++) {
+					int candidate = exact ? i : random.nextInt(capacity);
+					long count = slots[candidate].count.sum();
+					if (count < min) {
+						min = count;
+						slot = candidate;
+					}
+				}
+				HotKeyCounter victim = slots[slot];
+				victim.evicted = true;
+				hotKeys.remove(victim.key, victim);
+				inherited = min;
+			}
+			counter = new HotKeyCounter(key, inherited);
+			slots[slot] = counter;
+			hotKeys.put(key, counter);
+			return counter;
+		} finally {
+			admissionLock.unlock();
+		}
+	}
+
+	private static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	private static LongAdder[] newHistogram() {
+		LongAdder[] histogram = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram[i] = new LongAdder();
+		}
+		return histogram;
+	}
+
+	private static long[] sum(LongAdder[] histogram) {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = histogram[i].sum();
+		}
+		return counts;
+	}
+
+	private static class HotKeyCounter {
+		private final Object key;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder waitNanos = new LongAdder();
+		private final long error;
+		private volatile boolean evicted;
+
+		private HotKeyCounter(Object key, long error) {
+			this.key = key;
+			this.error = error;
+			count.add(error);
+		}
+	}
+
+	/**
+	 * 热点键
+	 */
+	public static class HotKey<K> {
+		private final K key;
+		private final long count;
+		private final long error;
+		private final long waitNanos;
+
+		private HotKey(K key, long count, long error, long waitNanos) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+			this.waitNanos = waitNanos;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * @return 估算的加锁次数(近似值,见类说明)
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return 进入热点列表时继承的计数,真实次数约在[count-error, count]之间
+		 */
+		public long getError() {
+			return error;
+		}
+
+		/**
+		 * @return 进入热点列表后的累计等待时间(纳秒)
+		 */
+		public long getWaitNanos() {
+			return waitNanos;
+		}
+
+		@Override
+		public String toString() {
+			return key + "(count=" + count + ", error=" + error + ", waitNanos=" + waitNanos + ")";
+		}
+	}
+
+	/**
+	 * 统计快照
+	 */
+	public static class Snapshot<K> {
+		private final long acquires;
+		private final long[] waitHistogram;
+		private final long[] holdHistogram;
+		private final List<HotKey<K>> hotKeys;
+
+		private Snapshot(long acquires, long[] waitHistogram, long[] holdHistogram, List<HotKey<K>> hotKeys) {
+			this.acquires = acquires;
+			this.waitHistogram = waitHistogram;
+			this.holdHistogram = holdHistogram;
+			this.hotKeys = hotKeys;
+		}
+
+		/**
+		 * @return 加锁次数
+		 */
+		public long getAcquires() {
+			return acquires;
+		}
+
+		/**
+		 * @return 等待时间直方图,下标i对应[2^(i-1), 2^i)纳秒
+		 */
+		public long[] getWaitHistogram() {
+			return waitHistogram.clone();
+		}
+
+		/**
+		 * @return 持有时间直方图,下标i对应[2^(i-1), 2^i)纳秒
+		 */
+		public long[] getHoldHistogram() {
+			return holdHistogram.clone();
+		}
+
+		/**
+		 * @return 热点键,按加锁次数倒序
+		 */
+		public List<HotKey<K>> getHotKeys() {
+			return hotKeys;
+		}
+
+		/**
+		 * @param percentile 百分位,(0,100]
+		 * @return 等待时间的百分位上限(纳秒)
+		 */
+		public long waitPercentile(double percentile) {
+			return percentile(waitHistogram, percentile);
+		}
+
+		/**
+		 * @param percentile 百分位,(0,100]
+		 * @return 持有时间的百分位上限(纳秒)
+		 */
+		public long holdPercentile(double percentile) {
+			return percentile(holdHistogram, percentile);
+		}
+
+		private static long percentile(long[] histogram, double percentile) {
+			long total = 0;
+			for (long count : histogram) {
+				total += count;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long threshold = (long) Math.ceil(total * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < histogram.length; i++) {
+				seen += histogram[i];
+				if (seen >= threshold) {
+					return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : 1L << i);
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public String toString() {
+			return "acquires=" + acquires
+					+ ", wait p50/p99=" + waitPercentile(50) + "/" + waitPercentile(99) + "ns"
+					+ ", hold p50/p99=" + holdPercentile(50) + "/" + holdPercentile(99) + "ns"
+					+ ", hotKeys=" + hotKeys;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.ag777.util.lang.thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按键串行的异步执行器
+ * <p>
+ * 作为{@link KeyLock}的异步替代:同一个键的任务严格按提交顺序依次执行,不同键的任务并行执行,
+ * 等待中的任务只是挂在前一个任务的CompletableFuture上,不会占用(阻塞)任何线程<br>
+ * 每个键只保存最后一个任务的future,该键的任务全部执行完后自动从map中移除<br>
+ * 默认使用ForkJoinPool.commonPool(),jdk21以上也可以传入Executors.newVirtualThreadPerTaskExecutor()
+ * </p>
+ * <pre>
+ * KeyedSerialExecutor&lt;Long&gt; executor = new KeyedSerialExecutor&lt;&gt;();
+ * executor.submit(accountId, () -&gt; updateBalance(accountId, delta))
+ *     .thenAccept(balance -&gt; ...);
+ * </pre>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <K> 键类型
+ */
+public class KeyedSerialExecutor<K> {
+
+	private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+	private final Executor executor;
+	// 每个键最后一个任务的完成信号,只会正常完成
+	private final ConcurrentMap<K, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+	public KeyedSerialExecutor() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param executor 实际执行任务的线程池
+	 */
+	public KeyedSerialExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor不能为空");
+		}
+		this.executor = executor;
+	}
+
+	/**
+	 * 提交任务
+	 * @param key 键,同一个键的任务串行执行
+	 * @param task 任务
+	 * @return 任务结果,任务抛出的异常会使其异常完成;在任务开始前取消则任务不会执行
+	 */
+	public <R> CompletableFuture<R> submit(K key, Callable<R> task) {
+		return submitAsync(key, () -> {
+			CompletableFuture<R> future = new CompletableFuture<>();
+			try {
+				future.complete(task.call());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+			return future;
+		});
+	}
+
+	/**
+	 * 提交任务
+	 * @param key 键,同一个键的任务串行执行
+	 * @param task 任务
+	 * @return 任务完成信号
+	 */
+	public CompletableFuture<Void> submit(K key, Runnable task) {
+		return submit(key, () -> {
+			task.run();
+			return null;
+		});
+	}
+
+	/**
+	 * 提交异步任务
+	 * <p>
+	 * task返回的CompletionStage完成之后,同一个键的下一个任务才会开始,等待期间不占用线程
+	 * </p>
+	 * @param key 键,同一个键的任务串行执行
+	 * @param task 返回CompletionStage的异步任务
+	 * @return 任务结果,executor拒绝执行时以RejectedExecutionException异常完成
+	 */
+	public <R> CompletableFuture<R> submitAsync(K key, Supplier<? extends CompletionStage<R>> task) {
+		CompletableFuture<R> result = new CompletableFuture<>();
+		CompletableFuture<Void> next = new CompletableFuture<>();
+		//map中只做原子替换,任务链在外面构建,避免直接执行的executor在ConcurrentHashMap的锁内运行任务
+		CompletableFuture<Void> prev = tails.put(key, next);
+		next.whenComplete((v, e) -> tails.remove(key, next));
+		(prev == null ? DONE : prev)
+				.handleAsync((v, e) -> start(task, result), executor)
+				.thenCompose(Function.identity())
+				.whenComplete((v, e) -> {
+					if (e != null) {	//executor拒绝执行(线程池已满或已关闭)
+						result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+					}
+					next.complete(null);
+				});
+		return result;
+	}
+
+	/**
+	 * @return 还有任务未执行完的键个数
+	 */
+	public int pendingKeys() {
+		return tails.size();
+	}
+
+	/**
+	 * 开始执行任务,返回任务结束的信号(无论成功失败都正常完成)
+	 */
+	private static <R> CompletableFuture<Void> start(Supplier<? extends CompletionStage<R>> task, CompletableFuture<R> result) {
+		if (result.isDone()) {	//开始前已被取消
+			return DONE;
+		}
+		CompletableFuture<Void> finished = new CompletableFuture<>();
+		try {
+			task.get().whenComplete((r, e) -> {
+				if (e != null) {
+					result.completeExceptionally(e);
+				} else {
+					result.complete(r);
+				}
+				finished.complete(null);
+			});
+		} catch (Throwable t) {
+			result.completeExceptionally(t);
+			finished.complete(null);
+		}
+		return finished;
+	}
+
+
+	public static void main(String[] args) {
+		KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>();
+		int keys = 100;
+		int tasksPerKey = 100;
+		int[] last = new int[keys];
+		AtomicInteger outOfOrder = new AtomicInteger();
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[keys];
+		long start = System.nanoTime();
+		for (int i = 0; i < tasksPerKey; i++) {
+			for (int key = 0; key < keys; key++) {
+				int k = key;
+				int seq = i;
+				futures[key] = executor.submit(key, () -> {
+					if (last[k] != seq) {
+						outOfOrder.incrementAndGet();
+					}
+					last[k] = seq + 1;
+				});
+			}
+		}
+		CompletableFuture.allOf(futures).join();
+		System.out.printf("%d个任务耗时 %d ms, 乱序 %d 个, 剩余键 %d 个%n",
+				keys * tasksPerKey, (System.nanoTime() - start) / 1_000_000, outOfOrder.get(), executor.pendingKeys());
+	}
+}
@@ -0,0 +1,185 @@
+package com.ag777.util.lang.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * 按键区分的读写锁
+ * <p>
+ * 键根据hashCode映射到固定数量的StampedLock上(和{@link KeyLock}一样采用分段),
+ * 每个键都可以使用乐观读、悲观读锁和写锁:
+ * 乐观读不写任何共享状态,同一个键的读也能随核数线性扩展;写操作按键串行<br>
+ * 分段数组在构造时一次性创建,不会为每个键保存状态,因此没有需要回收的空闲锁,
+ * 乐观读拿到的戳也始终对应同一个锁对象,不会因为锁被回收重建而误判为有效<br>
+ * StampedLock不可重入,同一线程持有写锁时不能再对同一个(或同一分段的)键加读锁或写锁
+ * </p>
+ * <pre>
+ * Value v = lock.read(id, () -&gt; cache.get(id));
+ * lock.write(id, () -&gt; cache.put(id, newValue));
+ * </pre>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <K> 键类型
+ */
+public class KeyedStampedLock<K> {
+
+	/* 默认分段数 */
+	private static final int DEFAULT_STRIPES = 1024;
+
+	private final StampedLock[] locks;
+	private final int mask;
+
+	public KeyedStampedLock() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes 分段数,会向上取整为2的幂
+	 */
+	public KeyedStampedLock(int stripes) {
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("分段数必须大于0:" + stripes);
+		}
+		int size = 1;
+		while (size < stripes && size < (1 << 30)) {
+			size <<= 1;
+		}
+		locks = new StampedLock[size];
+		for (int i = 0; i < size; i++) {
+			locks[i] = new StampedLock();
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * 获取乐观读戳,为0代表有线程正在进行写操作
+	 * @param key 键
+	 * @return 戳
+	 */
+	public long tryOptimisticRead(K key) {
+		return lockFor(key).tryOptimisticRead();
+	}
+
+	/**
+	 * 判断乐观读期间是否没有发生写操作
+	 * @param key 键
+	 * @param stamp {@link #tryOptimisticRead(Object)}得到的戳
+	 * @return 读到的数据是否有效
+	 */
+	public boolean validate(K key, long stamp) {
+		return lockFor(key).validate(stamp);
+	}
+
+	/**
+	 * 获取悲观读锁
+	 * @param key 键
+	 * @return 戳,用于释放
+	 */
+	public long readLock(K key) {
+		return lockFor(key).readLock();
+	}
+
+	/**
+	 * 释放悲观读锁
+	 * @param key 键
+	 * @param stamp {@link #readLock(Object)}得到的戳
+	 */
+	public void unlockRead(K key, long stamp) {
+		lockFor(key).unlockRead(stamp);
+	}
+
+	/**
+	 * 获取写锁
+	 * @param key 键
+	 * @return 戳,用于释放
+	 */
+	public long writeLock(K key) {
+		return lockFor(key).writeLock();
+	}
+
+	/**
+	 * 在超时时间内尝试获取写锁
+	 * @param key 键
+	 * @param timeout 超时时间
+	 * @param unit 时间单位
+	 * @return 戳,获取失败返回0
+	 * @throws InterruptedException 等待期间被中断
+	 */
+	public long tryWriteLock(K key, long timeout, TimeUnit unit) throws InterruptedException {
+		return lockFor(key).tryWriteLock(timeout, unit);
+	}
+
+	/**
+	 * 释放写锁
+	 * @param key 键
+	 * @param stamp {@link #writeLock(Object)}得到的戳
+	 */
+	public void unlockWrite(K key, long stamp) {
+		lockFor(key).unlockWrite(stamp);
+	}
+
+	/**
+	 * 读操作
+	 * <p>
+	 * 先乐观读,期间发生写操作则转为悲观读锁重新读取,因此reader可能被执行两次,需要无副作用
+	 * </p>
+	 * @param key 键
+	 * @param reader 读操作
+	 * @return 读到的值
+	 */
+	public <R> R read(K key, Supplier<R> reader) {
+		StampedLock lock = lockFor(key);
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			R result = reader.get();
+			if (lock.validate(stamp)) {
+				return result;
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return reader.get();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * 写操作
+	 * @param key 键
+	 * @param writer 写操作
+	 * @return writer的返回值
+	 */
+	public <R> R write(K key, Supplier<R> writer) {
+		StampedLock lock = lockFor(key);
+		long stamp = lock.writeLock();
+		try {
+			return writer.get();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * 写操作
+	 * @param key 键
+	 * @param writer 写操作
+	 */
+	public void write(K key, Runnable writer) {
+		StampedLock lock = lockFor(key);
+		long stamp = lock.writeLock();
+		try {
+			writer.run();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private StampedLock lockFor(K key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & mask];
+	}
+}
@@ -37,4 +37,17 @@ public class Locks {
 	public static StampedLock getStampedLock() {
 		return new StampedLock();
 	}
+	
+	/**
+	 * 按键区分的读写锁
+	 * <p>
+	 * 每个键都有独立的乐观读、悲观读锁和写锁,用法和上面的StampedLock相同,只是多传一个键:
+	 * Value v = lock.read(id, () -&gt; cache.get(id));
+	 * lock.write(id, () -&gt; cache.put(id, newValue));
+	 * </p>
+	 * @return
+	 */
+	public static <K> KeyedStampedLock<K> getKeyedStampedLock() {
+		return new KeyedStampedLock<>();
+	}
 }
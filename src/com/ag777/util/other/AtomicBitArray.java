@@ -0,0 +1,51 @@
+package com.ag777.util.other;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 基于AtomicLongArray的位数组,通过CAS置位,线程安全且无锁
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+class AtomicBitArray implements BitArray {
+
+	private final AtomicLongArray data;
+
+	AtomicBitArray(long bits) {
+		this.data = new AtomicLongArray(LongBitArray.wordCount(bits));
+	}
+
+	@Override
+	public long bitSize() {
+		return (long) data.length() << 6;
+	}
+
+	@Override
+	public boolean set(long index) {
+		int i = (int) (index >>> 6);
+		long mask = 1L << index;
+		long word;
+		do {
+			word = data.get(i);
+			if ((word & mask) != 0) {	//已经置位的情况下不做写操作,避免缓存行在各核之间来回传递
+				return false;
+			}
+		} while (!data.compareAndSet(i, word, word | mask));
+		return true;
+	}
+
+	@Override
+	public boolean get(long index) {
+		return (data.get((int) (index >>> 6)) & (1L << index)) != 0;
+	}
+
+	@Override
+	public long bitCount() {
+		long count = 0;
+		for (int i = 0; i < data.length(); i++) {
+			count += Long.bitCount(data.get(i));
+		}
+		return count;
+	}
+}
@@ -0,0 +1,36 @@
+package com.ag777.util.other;
+
+/**
+ * 布隆过滤器的位数组
+ * <p>
+ * 下标为long型,长度可以超过2^31位
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+interface BitArray {
+
+	/**
+	 * @return 总位数
+	 */
+	long bitSize();
+
+	/**
+	 * 将某一位置为1
+	 * @param index 下标
+	 * @return 该位之前是否为0(即本次是否改变了位数组)
+	 */
+	boolean set(long index);
+
+	/**
+	 * @param index 下标
+	 * @return 该位是否为1
+	 */
+	boolean get(long index);
+
+	/**
+	 * @return 为1的位数
+	 */
+	long bitCount();
+}
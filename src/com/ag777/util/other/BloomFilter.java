@@ -4,80 +4,327 @@ import java.util.BitSet;
 
 /**
  * 布隆过滤器，可以用于海量url排重，有很小的误差
- * @author 
+ * <p>
+ * 根据预计插入数量和期望误判率计算位数组长度及哈希函数个数,
+ * 哈希采用MurmurHash3(x64_128)做双重哈希,位数组下标为long,可以超过2^31位<br>
+ * 键通过{@link Funnel}转换为字节数组,因此可以是任意类型<br>
+ * 非线程安全
+ * </p>
+ * <pre>
+ * BloomFilter&lt;String&gt; filter = new BloomFilter&lt;&gt;(Funnel.STRING, 200_000_000L, 0.001);
+ * if(filter.put(url)) {
+ *     //url之前不存在
+ * }
+ * </pre>
  *
+ * @author ag777
+ * @version last modify at 2026年10月18日
+ * @param <T> 键类型
  */
-public class BloomFilter {
-	/* BitSet初始分配2^24个bit */  
-    private static final int DEFAULT_SIZE = 1 << 25;  
-      
-    /* 不同哈希函数的种子，一般应取质数 */  
-    private static final int[] seeds = new int[] { 5, 7, 11, 13, 31, 37, 61 };  
-      
-    private BitSet bits = new BitSet(DEFAULT_SIZE);  
-      
-    /* 哈希函数对象 */  
-    private SimpleHash[] func = new SimpleHash[seeds.length];  
-  
-    public BloomFilter() {  
-        for (int i = 0; i < seeds.length; i++) {  
-            func[i] = new SimpleHash(DEFAULT_SIZE, seeds[i]);  
-        }  
-    }  
-  
-    // 将字符串标记到bits中  
-    public void add(String value) {  
-        for (SimpleHash f : func) {  
-            bits.set(f.hash(value), true);  
-        }  
-    }  
-  
-    // 判断字符串是否已经被bits标记  
-    public boolean contains(String value) {  
-        if (value == null) {  
-            return false;  
-        }  
-          
-        boolean ret = true;  
-        for (SimpleHash f : func) {  
-            ret = ret && bits.get(f.hash(value));  
-        }  
-          
-        return ret;  
-    }  
-  
-    /* 哈希函数类 */  
-    public static class SimpleHash {  
-        private int cap;  
-        private int seed;  
-  
-        public SimpleHash(int cap, int seed) {  
-            this.cap = cap;  
-            this.seed = seed;  
-        }  
-  
-        // hash函数，采用简单的加权和hash  
-        public int hash(String value) {  
-            int result = 0;  
-            int len = value.length();  
-            for (int i = 0; i < len; i++) {  
-                result = seed * result + value.charAt(i);  
-            }  
-            return (cap - 1) & result;  
-        }  
-    }  
-    
-    
-    public static void main(String[] args) {
-    	BloomFilter filter = new BloomFilter();  
-        for(int i=0; i<100000; i++) {
-        	String url = "http://192.168.162."+(i/10)+"/";
-        	  if (filter.contains(url)) {  
-	                System.out.println("contain: " + url);  
-	                continue;  
-	            }  
-	              
-	            filter.add(url);  
-        }
+public class BloomFilter<T> {
+	/* 无参构造时BitSet分配2^25个bit */
+	private static final int DEFAULT_SIZE = 1 << 25;
+
+	/* 无参构造时的哈希函数个数,和旧版种子个数保持一致 */
+	private static final int DEFAULT_HASH_FUNCTIONS = 7;
+
+	/* 旧版哈希函数的种子,仅用于对比测试 */
+	private static final int[] seeds = new int[] { 5, 7, 11, 13, 31, 37, 61 };
+
+	final BitArray bits;
+	final int numHashFunctions;
+	final long seed;
+	final Funnel<? super T> funnel;
+
+	/**
+	 * 兼容旧版的构造函数,固定2^25位,7个哈希函数,键取toString()
+	 * @deprecated 请使用{@link #BloomFilter(Funnel, long, double)}按数据量构造
+	 */
+	@Deprecated
+	public BloomFilter() {
+		this(Funnel.OBJECT, new LongBitArray(DEFAULT_SIZE), DEFAULT_HASH_FUNCTIONS, 0);
+	}
+
+	/**
+	 * 键取toString()的utf-8编码
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 */
+	public BloomFilter(long expectedInsertions, double fpp) {
+		this(Funnel.OBJECT, expectedInsertions, fpp);
+	}
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 */
+	public BloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp) {
+		this(funnel, expectedInsertions, fpp, 0);
+	}
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 * @param seed 哈希种子
+	 */
+	public BloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp, long seed) {
+		this(funnel,
+				new LongBitArray(optimalNumOfBits(expectedInsertions, fpp)),
+				optimalNumOfHashFunctions(expectedInsertions, optimalNumOfBits(expectedInsertions, fpp)),
+				seed);
+	}
+
+	BloomFilter(Funnel<? super T> funnel, BitArray bits, int numHashFunctions, long seed) {
+		if (funnel == null) {
+			throw new IllegalArgumentException("funnel不能为空");
+		}
+		if (numHashFunctions <= 0 || numHashFunctions > 255) {
+			throw new IllegalArgumentException("哈希函数个数必须在[1,255]之间:" + numHashFunctions);
+		}
+		this.funnel = funnel;
+		this.bits = bits;
+		this.numHashFunctions = numHashFunctions;
+		this.seed = seed;
+	}
+
+	/**
+	 * 将键标记到bits中
+	 * @param value 键
+	 * @return 是否有位发生了变化,为true说明该键之前一定不存在
+	 */
+	public boolean put(T value) {
+		return put(hash(value));
+	}
+
+	/**
+	 * 根据已经计算好的哈希值放入
+	 * @param hash {@link #hash(Object)}的结果
+	 * @return 是否有位发生了变化
+	 */
+	boolean put(long[] hash) {
+		long bitSize = bits.bitSize();
+		long combined = hash[0];
+		boolean changed = false;
+		for (int i = 0; i < numHashFunctions; i++) {
+			changed |= bits.set(index(combined, bitSize));
+			combined += hash[1];
+		}
+		return changed;
+	}
+
+	/**
+	 * 判断键是否可能存在,返回false则一定不存在
+	 * @param value 键
+	 * @return 是否可能存在
+	 */
+	public boolean mightContain(T value) {
+		return mightContain(hash(value));
+	}
+
+	/**
+	 * 根据已经计算好的哈希值判断
+	 * @param hash {@link #hash(Object)}的结果
+	 * @return 是否可能存在
+	 */
+	boolean mightContain(long[] hash) {
+		long bitSize = bits.bitSize();
+		long combined = hash[0];
+		for (int i = 0; i < numHashFunctions; i++) {
+			if (!bits.get(index(combined, bitSize))) {
+				return false;
+			}
+			combined += hash[1];
+		}
+		return true;
+	}
+
+	/**
+	 * 将键标记到bits中
+	 * @param value 键
+	 */
+	public void add(T value) {
+		put(value);
+	}
+
+	/**
+	 * 判断键是否已经被bits标记
+	 * @param value 键
+	 * @return 是否可能存在,null返回false
+	 */
+	public boolean contains(T value) {
+		if (value == null) {
+			return false;
+		}
+		return mightContain(value);
+	}
+
+	/**
+	 * @return 位数组长度
+	 */
+	public long bitSize() {
+		return bits.bitSize();
+	}
+
+	/**
+	 * @return 哈希函数个数
+	 */
+	public int numHashFunctions() {
+		return numHashFunctions;
+	}
+
+	/**
+	 * @return 哈希种子
+	 */
+	public long seed() {
+		return seed;
+	}
+
+	/**
+	 * 根据当前位数组的填充率估算误判率
+	 * @return 误判率
+	 */
+	public double expectedFpp() {
+		return Math.pow((double) bits.bitCount() / bits.bitSize(), numHashFunctions);
+	}
+
+	/**
+	 * 根据当前位数组的填充率估算已插入的元素个数
+	 * @return 元素个数
+	 */
+	public long approximateElementCount() {
+		double bitSize = bits.bitSize();
+		double bitCount = bits.bitCount();
+		return Math.round(-bitSize / numHashFunctions * Math.log1p(-bitCount / bitSize));
+	}
+
+	/**
+	 * 计算最优位数组长度 m = -n*ln(p)/(ln2)^2
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 * @return 位数
+	 */
+	public static long optimalNumOfBits(long expectedInsertions, double fpp) {
+		if (expectedInsertions < 0) {
+			throw new IllegalArgumentException("预计插入数量不能小于0:" + expectedInsertions);
+		}
+		if (!(fpp > 0 && fpp < 1)) {
+			throw new IllegalArgumentException("误判率必须在(0,1)之间:" + fpp);
+		}
+		if (expectedInsertions == 0) {
+			expectedInsertions = 1;
+		}
+		return Math.max(64, (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+	}
+
+	/**
+	 * 计算最优哈希函数个数 k = m/n*ln2
+	 * @param expectedInsertions 预计插入数量
+	 * @param numBits 位数
+	 * @return 哈希函数个数
+	 */
+	public static int optimalNumOfHashFunctions(long expectedInsertions, long numBits) {
+		if (expectedInsertions <= 0) {
+			expectedInsertions = 1;
+		}
+		long k = Math.round((double) numBits / expectedInsertions * Math.log(2));
+		return (int) Math.max(1, Math.min(k, 255));
+	}
+
+	long[] hash(T value) {
+		return Murmur3.hash128(funnel.funnel(value), seed);
+	}
+
+	static long index(long combined, long bitSize) {
+		return (combined & Long.MAX_VALUE) % bitSize;
+	}
+
+	/* 旧版哈希函数类 */
+	/**
+	 * @deprecated 只对char做加权和,分布较差,保留仅用于兼容及对比测试
+	 */
+	@Deprecated
+	public static class SimpleHash {
+		private int cap;
+		private int seed;
+
+		public SimpleHash(int cap, int seed) {
+			this.cap = cap;
+			this.seed = seed;
+		}
+
+		// hash函数，采用简单的加权和hash
+		public int hash(String value) {
+			int result = 0;
+			int len = value.length();
+			for (int i = 0; i < len; i++) {
+				result = seed * result + value.charAt(i);
+			}
+			return (cap - 1) & result;
+		}
+	}
+
+
+	/**
+	 * 和旧版(BitSet+SimpleHash)进行对比,输出插入/查询耗时及实测误判率
+	 */
+	@SuppressWarnings("deprecation")
+	public static void main(String[] args) {
+		int n = 1_000_000;
+		double fpp = 0.01;
+		String[] present = new String[n];
+		String[] absent = new String[n];
+		for (int i = 0; i < n; i++) {
+			present[i] = "http://192.168." + (i >>> 16) + "." + (i & 0xffff) + "/index.html?id=" + i;
+			absent[i] = "http://10.0." + (i >>> 16) + "." + (i & 0xffff) + "/page?id=" + i;
+		}
+
+		//旧版
+		BitSet legacyBits = new BitSet(DEFAULT_SIZE);
+		SimpleHash[] func = new SimpleHash[seeds.length];
+		for (int i = 0; i < seeds.length; i++) {
+			func[i] = new SimpleHash(DEFAULT_SIZE, seeds[i]);
+		}
+		long start = System.nanoTime();
+		for (String url : present) {
+			for (SimpleHash f : func) {
+				legacyBits.set(f.hash(url), true);
+			}
+		}
+		long putNs = System.nanoTime() - start;
+		int falsePositive = 0;
+		start = System.nanoTime();
+		for (String url : absent) {
+			boolean ret = true;
+			for (SimpleHash f : func) {
+				ret = ret && legacyBits.get(f.hash(url));
+			}
+			if (ret) {
+				falsePositive++;
+			}
+		}
+		long getNs = System.nanoTime() - start;
+		System.out.printf("旧版: %d bits, put %.1f ns/op, contains %.1f ns/op, 实测误判率 %.5f%n",
+				DEFAULT_SIZE, (double) putNs / n, (double) getNs / n, (double) falsePositive / n);
+
+		//新版
+		BloomFilter<String> filter = new BloomFilter<>(Funnel.STRING, n, fpp);
+		start = System.nanoTime();
+		for (String url : present) {
+			filter.put(url);
+		}
+		putNs = System.nanoTime() - start;
+		falsePositive = 0;
+		start = System.nanoTime();
+		for (String url : absent) {
+			if (filter.mightContain(url)) {
+				falsePositive++;
+			}
+		}
+		getNs = System.nanoTime() - start;
+		System.out.printf("新版: %d bits, k=%d, put %.1f ns/op, mightContain %.1f ns/op, 实测误判率 %.5f(期望 %.5f), 估算元素个数 %d%n",
+				filter.bitSize(), filter.numHashFunctions(), (double) putNs / n, (double) getNs / n,
+				(double) falsePositive / n, filter.expectedFpp(), filter.approximateElementCount());
 	}
 }
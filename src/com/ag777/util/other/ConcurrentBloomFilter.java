@@ -0,0 +1,133 @@
+package com.ag777.util.other;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程安全的布隆过滤器
+ * <p>
+ * 位数组基于AtomicLongArray,置位采用CAS,不加全局锁<br>
+ * 多线程排重时直接调用{@link #putIfAbsent(Object)},只做一次哈希,不需要先contains再add:
+ * </p>
+ * <pre>
+ * ConcurrentBloomFilter&lt;String&gt; filter = new ConcurrentBloomFilter&lt;&gt;(Funnel.STRING, 200_000_000L, 0.001);
+ * if(filter.putIfAbsent(url)) {
+ *     //抓取url
+ * }
+ * </pre>
+ * <p>
+ * 注意:同一个键被多个线程同时放入时,各线程可能分别置了不同的位,因此极小概率会有多个线程都返回true,
+ * 即可能重复处理,但不会漏掉
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 键类型
+ */
+public class ConcurrentBloomFilter<T> extends BloomFilter<T> {
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 */
+	public ConcurrentBloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp) {
+		this(funnel, expectedInsertions, fpp, 0);
+	}
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 * @param seed 哈希种子
+	 */
+	public ConcurrentBloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp, long seed) {
+		super(funnel,
+				new AtomicBitArray(optimalNumOfBits(expectedInsertions, fpp)),
+				optimalNumOfHashFunctions(expectedInsertions, optimalNumOfBits(expectedInsertions, fpp)),
+				seed);
+	}
+
+	/**
+	 * 键不存在时放入
+	 * @param value 键
+	 * @return 是否有位发生了变化,为true说明该键之前不存在,本次已放入
+	 */
+	public boolean putIfAbsent(T value) {
+		return put(value);
+	}
+
+
+	/**
+	 * 对比单线程BloomFilter和多线程下ConcurrentBloomFilter的每核吞吐
+	 */
+	public static void main(String[] args) {
+		try {
+			benchmark();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void benchmark() throws InterruptedException {
+		int perThread = 2_000_000;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+
+		double baseline = 0;
+		for (int round = 0; round < 3; round++) {	//前两轮预热
+			BloomFilter<Long> plain = new BloomFilter<>(Funnel.LONG, (long) perThread * maxThreads, 0.001);
+			ConcurrentBloomFilter<Long> warmUp = new ConcurrentBloomFilter<>(Funnel.LONG, (long) perThread * maxThreads, 0.001);
+			for (long i = 0; i < perThread; i++) {
+				warmUp.putIfAbsent(i);
+			}
+			long start = System.nanoTime();
+			for (long i = 0; i < perThread; i++) {
+				plain.put(i);
+			}
+			baseline = (double) (System.nanoTime() - start) / perThread;
+		}
+		System.out.printf("BloomFilter 单线程: %.1f ns/op%n", baseline);
+
+		for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+			ConcurrentBloomFilter<Long> filter = new ConcurrentBloomFilter<>(Funnel.LONG, (long) perThread * maxThreads, 0.001);
+			AtomicLong totalNs = new AtomicLong();
+			AtomicLong added = new AtomicLong();
+			CountDownLatch ready = new CountDownLatch(threads);
+			CountDownLatch go = new CountDownLatch(1);
+			List<Thread> list = new ArrayList<>(threads);
+			for (int t = 0; t < threads; t++) {
+				//每个线程一半键和其他线程重叠,模拟排重场景
+				long from = (long) t * perThread / 2;
+				Thread thread = new Thread(() -> {
+					ready.countDown();
+					try {
+						go.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long count = 0;
+					long begin = System.nanoTime();
+					for (long i = from; i < from + perThread; i++) {
+						if (filter.putIfAbsent(i)) {
+							count++;
+						}
+					}
+					totalNs.addAndGet(System.nanoTime() - begin);
+					added.addAndGet(count);
+				});
+				thread.start();
+				list.add(thread);
+			}
+			ready.await();
+			go.countDown();
+			for (Thread thread : list) {
+				thread.join();
+			}
+			double perOp = (double) totalNs.get() / threads / perThread;
+			System.out.printf("ConcurrentBloomFilter %2d线程: %.1f ns/op(每线程), 相对单线程 %.0f%%, 放入 %d 个%n",
+					threads, perOp, baseline / perOp * 100, added.get());
+		}
+	}
+}
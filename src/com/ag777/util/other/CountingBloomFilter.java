@@ -0,0 +1,174 @@
+package com.ag777.util.other;
+
+/**
+ * 计数布隆过滤器,支持删除
+ * <p>
+ * 每个位置用4位计数器代替1位,16个计数器压缩在一个long里,内存是同参数{@link BloomFilter}的4倍<br>
+ * 计数器达到15后不再增加也不再减少(饱和),避免溢出导致误删<br>
+ * 只能删除确实放入过的键,删除未放入过的键(恰好误判为存在时)会导致其他键被漏判<br>
+ * 非线程安全
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 键类型
+ */
+public class CountingBloomFilter<T> {
+
+	private static final long MAX_COUNT = 15;
+
+	private final long[] data;
+	private final long counterSize;
+	private final int numHashFunctions;
+	private final long seed;
+	private final Funnel<? super T> funnel;
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 */
+	public CountingBloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp) {
+		this(funnel, expectedInsertions, fpp, 0);
+	}
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 * @param seed 哈希种子
+	 */
+	public CountingBloomFilter(Funnel<? super T> funnel, long expectedInsertions, double fpp, long seed) {
+		if (funnel == null) {
+			throw new IllegalArgumentException("funnel不能为空");
+		}
+		long numCounters = BloomFilter.optimalNumOfBits(expectedInsertions, fpp);
+		//每个long存16个计数器,借用wordCount按4倍位数计算long的个数
+		this.data = new long[LongBitArray.wordCount(numCounters << 2)];
+		this.counterSize = (long) data.length << 4;
+		this.numHashFunctions = BloomFilter.optimalNumOfHashFunctions(expectedInsertions, numCounters);
+		this.seed = seed;
+		this.funnel = funnel;
+	}
+
+	/**
+	 * 放入键,对应的计数器全部加1
+	 * @param value 键
+	 * @return 是否有计数器从0变为1,为true说明该键之前一定不存在
+	 */
+	public boolean put(T value) {
+		long[] hash = hash(value);
+		long combined = hash[0];
+		boolean changed = false;
+		for (int i = 0; i < numHashFunctions; i++) {
+			long index = BloomFilter.index(combined, counterSize);
+			long count = get(index);
+			if (count < MAX_COUNT) {
+				set(index, count + 1);
+				changed |= count == 0;
+			}
+			combined += hash[1];
+		}
+		return changed;
+	}
+
+	/**
+	 * 删除键,对应的计数器全部减1
+	 * @param value 键
+	 * @return 是否删除成功,键一定不存在时返回false且不做修改
+	 */
+	public boolean remove(T value) {
+		long[] hash = hash(value);
+		if (approximateCount(hash) == 0) {
+			return false;
+		}
+		long combined = hash[0];
+		for (int i = 0; i < numHashFunctions; i++) {
+			long index = BloomFilter.index(combined, counterSize);
+			long count = get(index);
+			if (count > 0 && count < MAX_COUNT) {	//饱和的计数器无法得知真实值,不再减少
+				set(index, count - 1);
+			}
+			combined += hash[1];
+		}
+		return true;
+	}
+
+	/**
+	 * 判断键是否可能存在,返回false则一定不存在
+	 * @param value 键
+	 * @return 是否可能存在
+	 */
+	public boolean mightContain(T value) {
+		return approximateCount(hash(value)) > 0;
+	}
+
+	/**
+	 * 估算键被放入的次数(对应计数器的最小值),不会小于真实次数,最大为15
+	 * @param value 键
+	 * @return 次数
+	 */
+	public int approximateCount(T value) {
+		return approximateCount(hash(value));
+	}
+
+	/**
+	 * @return 计数器个数
+	 */
+	public long counterSize() {
+		return counterSize;
+	}
+
+	/**
+	 * @return 哈希函数个数
+	 */
+	public int numHashFunctions() {
+		return numHashFunctions;
+	}
+
+	private int approximateCount(long[] hash) {
+		long combined = hash[0];
+		long min = MAX_COUNT;
+		for (int i = 0; i < numHashFunctions && min > 0; i++) {
+			min = Math.min(min, get(BloomFilter.index(combined, counterSize)));
+			combined += hash[1];
+		}
+		return (int) min;
+	}
+
+	private long[] hash(T value) {
+		return Murmur3.hash128(funnel.funnel(value), seed);
+	}
+
+	private long get(long index) {
+		return (data[(int) (index >>> 4)] >>> ((index & 15) << 2)) & MAX_COUNT;
+	}
+
+	private void set(long index, long count) {
+		int i = (int) (index >>> 4);
+		int shift = (int) (index & 15) << 2;
+		data[i] = (data[i] & ~(MAX_COUNT << shift)) | (count << shift);
+	}
+
+
+	public static void main(String[] args) {
+		CountingBloomFilter<String> filter = new CountingBloomFilter<>(Funnel.STRING, 100_000, 0.01);
+		for (int i = 0; i < 100_000; i++) {
+			filter.put("http://192.168.162." + i + "/");
+		}
+		for (int i = 0; i < 50_000; i++) {
+			filter.remove("http://192.168.162." + i + "/");
+		}
+		int stillThere = 0;
+		int lost = 0;
+		for (int i = 0; i < 100_000; i++) {
+			boolean contains = filter.mightContain("http://192.168.162." + i + "/");
+			if (i < 50_000 && contains) {
+				stillThere++;
+			} else if (i >= 50_000 && !contains) {
+				lost++;
+			}
+		}
+		System.out.println("已删除但仍判断存在:" + stillThere + ",未删除但判断不存在:" + lost);
+	}
+}
@@ -0,0 +1,61 @@
+package com.ag777.util.other;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 布隆过滤器的"漏斗"
+ * <p>
+ * 负责把任意类型的键转换为字节数组,过滤器再对字节数组做哈希<br>
+ * 同一个过滤器必须始终使用同一个漏斗,否则之前放入的元素将无法被判断出来
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 键类型
+ */
+@FunctionalInterface
+public interface Funnel<T> {
+
+	/**
+	 * 字符串(utf-8编码)
+	 */
+	Funnel<CharSequence> STRING = value -> value.toString().getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * 任意对象,取toString()的utf-8编码,对字符串来说和{@link #STRING}结果一致
+	 */
+	Funnel<Object> OBJECT = value -> String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * 字节数组,直接使用原数组
+	 */
+	Funnel<byte[]> BYTES = value -> value;
+
+	/**
+	 * 整型,大端序4字节
+	 */
+	Funnel<Integer> INTEGER = value -> {
+		int v = value;
+		return new byte[] {(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v};
+	};
+
+	/**
+	 * 长整型,大端序8字节
+	 */
+	Funnel<Long> LONG = value -> {
+		long v = value;
+		byte[] bytes = new byte[8];
+		for (int i = 7; i >= 0; i--) {
+			bytes[i] = (byte) v;
+			v >>>= 8;
+		}
+		return bytes;
+	};
+
+	/**
+	 * 将键转换为字节数组
+	 * @param value 键,不为null
+	 * @return 字节数组
+	 */
+	byte[] funnel(T value);
+}
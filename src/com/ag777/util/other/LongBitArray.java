@@ -0,0 +1,70 @@
+package com.ag777.util.other;
+
+/**
+ * 基于long[]的位数组,非线程安全
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+class LongBitArray implements BitArray {
+
+	private final long[] data;
+
+	LongBitArray(long bits) {
+		this(new long[wordCount(bits)]);
+	}
+
+	LongBitArray(long[] data) {
+		if (data.length == 0) {
+			throw new IllegalArgumentException("位数组长度必须大于0");
+		}
+		this.data = data;
+	}
+
+	/**
+	 * 计算存放指定位数所需的long个数
+	 * @param bits 位数
+	 * @return long个数
+	 */
+	static int wordCount(long bits) {
+		if (bits <= 0) {
+			throw new IllegalArgumentException("位数必须大于0:" + bits);
+		}
+		long words = (bits + 63) >>> 6;
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("位数过大:" + bits);
+		}
+		return (int) words;
+	}
+
+	@Override
+	public long bitSize() {
+		return (long) data.length << 6;
+	}
+
+	@Override
+	public boolean set(long index) {
+		int i = (int) (index >>> 6);
+		long mask = 1L << index;
+		long word = data[i];
+		if ((word & mask) != 0) {
+			return false;
+		}
+		data[i] = word | mask;
+		return true;
+	}
+
+	@Override
+	public boolean get(long index) {
+		return (data[(int) (index >>> 6)] & (1L << index)) != 0;
+	}
+
+	@Override
+	public long bitCount() {
+		long count = 0;
+		for (long word : data) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+}
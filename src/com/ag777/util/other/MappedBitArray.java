@@ -0,0 +1,101 @@
+package com.ag777.util.other;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于内存映射文件的位数组,非线程安全
+ * <p>
+ * 单个MappedByteBuffer最大2G,因此按1G分段映射,总长度不受限制<br>
+ * 数据由操作系统按页加载和换出,不占用堆内存
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+class MappedBitArray implements BitArray {
+
+	/* 每段映射的字节数 */
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final MappedByteBuffer[] segments;
+	private final long bitSize;
+	private final boolean readOnly;
+
+	/**
+	 * @param channel 文件通道
+	 * @param offset 位数组在文件中的起始位置,需要是8的倍数
+	 * @param words long的个数
+	 * @param readOnly 是否只读映射,只读时通道只需要读权限,修改会抛出UnsupportedOperationException
+	 * @throws IOException 映射失败
+	 */
+	MappedBitArray(FileChannel channel, long offset, int words, boolean readOnly) throws IOException {
+		FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+		long bytes = (long) words << 3;
+		int count = (int) ((bytes + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		segments = new MappedByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long start = (long) i << SEGMENT_SHIFT;
+			long size = Math.min(1L << SEGMENT_SHIFT, bytes - start);
+			segments[i] = channel.map(mode, offset + start, size);
+			segments[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+		this.bitSize = (long) words << 6;
+		this.readOnly = readOnly;
+	}
+
+	@Override
+	public long bitSize() {
+		return bitSize;
+	}
+
+	@Override
+	public boolean set(long index) {
+		if (readOnly) {
+			throw new UnsupportedOperationException("只读模式下不能修改位数组");
+		}
+		long pos = (index >>> 6) << 3;
+		MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+		int p = (int) (pos & SEGMENT_MASK);
+		long mask = 1L << index;
+		long word = segment.getLong(p);
+		if ((word & mask) != 0) {
+			return false;
+		}
+		segment.putLong(p, word | mask);
+		return true;
+	}
+
+	@Override
+	public boolean get(long index) {
+		long pos = (index >>> 6) << 3;
+		return (segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & SEGMENT_MASK)) & (1L << index)) != 0;
+	}
+
+	@Override
+	public long bitCount() {
+		long count = 0;
+		for (MappedByteBuffer segment : segments) {
+			int limit = segment.limit();
+			for (int p = 0; p < limit; p += 8) {
+				count += Long.bitCount(segment.getLong(p));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 将修改写回磁盘
+	 */
+	void force() {
+		if (readOnly) {
+			return;
+		}
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package com.ag777.util.other;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射文件的布隆过滤器
+ * <p>
+ * 位数组保存在文件中并通过MappedByteBuffer访问,重启后{@link #open(Path, Funnel)}直接映射原文件,
+ * 不需要重新放入所有键,冷数据也可以由操作系统换出<br>
+ * 文件头(64字节)记录魔数、版本、位数、哈希函数个数和哈希种子,漏斗不会保存,打开时需要传入和创建时相同的漏斗<br>
+ * 以只读模式打开时只映射读权限,可以多个进程同时打开同一个文件查询<br>
+ * 非线程安全,映射在jdk8下只有被GC回收时才会真正解除
+ * </p>
+ * <pre>
+ * try(MappedBloomFilter&lt;String&gt; filter = MappedBloomFilter.open(path, Funnel.STRING)) {
+ *     filter.put(url);
+ *     filter.snapshot(backupPath);
+ * }
+ * </pre>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 键类型
+ */
+public class MappedBloomFilter<T> extends BloomFilter<T> implements Closeable {
+
+	private static final int MAGIC = 0x424C4F4D;	//BLOM
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+
+	private final Path realPath;
+	private final FileChannel channel;
+	private final MappedBitArray mappedBits;
+
+	private MappedBloomFilter(Funnel<? super T> funnel, Path realPath, FileChannel channel, MappedBitArray bits, int numHashFunctions, long seed) {
+		super(funnel, bits, numHashFunctions, seed);
+		this.realPath = realPath;
+		this.channel = channel;
+		this.mappedBits = bits;
+	}
+
+	/**
+	 * 创建新的过滤器文件,文件已存在则覆盖
+	 * @param path 文件路径
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 * @return 过滤器
+	 * @throws IOException 文件读写失败
+	 */
+	public static <T> MappedBloomFilter<T> create(Path path, Funnel<? super T> funnel, long expectedInsertions, double fpp) throws IOException {
+		return create(path, funnel, expectedInsertions, fpp, 0);
+	}
+
+	/**
+	 * 创建新的过滤器文件,文件已存在则覆盖
+	 * @param path 文件路径
+	 * @param funnel 键转字节数组的方式
+	 * @param expectedInsertions 预计插入数量
+	 * @param fpp 期望误判率,(0,1)
+	 * @param seed 哈希种子
+	 * @return 过滤器
+	 * @throws IOException 文件读写失败
+	 */
+	public static <T> MappedBloomFilter<T> create(Path path, Funnel<? super T> funnel, long expectedInsertions, double fpp, long seed) throws IOException {
+		long numBits = optimalNumOfBits(expectedInsertions, fpp);
+		int words = LongBitArray.wordCount(numBits);
+		int numHashFunctions = optimalNumOfHashFunctions(expectedInsertions, numBits);
+
+		FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC)
+					.putInt(VERSION)
+					.putLong((long) words << 6)
+					.putInt(numHashFunctions)
+					.putLong(seed);
+			header.clear();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			//扩展文件长度,新增部分由文件系统补0(稀疏文件)
+			channel.write(ByteBuffer.allocate(1), HEADER_SIZE + ((long) words << 3) - 1);
+			MappedBitArray bits = new MappedBitArray(channel, HEADER_SIZE, words, false);
+			return new MappedBloomFilter<>(funnel, path.toRealPath(), channel, bits, numHashFunctions, seed);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 打开已有的过滤器文件
+	 * @param path 文件路径
+	 * @param funnel 键转字节数组的方式,需要和创建时一致
+	 * @return 过滤器
+	 * @throws IOException 文件读写失败或文件格式不正确
+	 */
+	public static <T> MappedBloomFilter<T> open(Path path, Funnel<? super T> funnel) throws IOException {
+		return open(path, funnel, false);
+	}
+
+	/**
+	 * 打开已有的过滤器文件
+	 * @param path 文件路径
+	 * @param funnel 键转字节数组的方式,需要和创建时一致
+	 * @param readOnly 是否只读,只读时文件只需要读权限,put会抛出UnsupportedOperationException
+	 * @return 过滤器
+	 * @throws IOException 文件读写失败或文件格式不正确
+	 */
+	public static <T> MappedBloomFilter<T> open(Path path, Funnel<? super T> funnel, boolean readOnly) throws IOException {
+		FileChannel channel = readOnly
+				? FileChannel.open(path, StandardOpenOption.READ)
+				: FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException("文件头不完整:" + path);
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("不是布隆过滤器文件:" + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("不支持的文件版本:" + version);
+			}
+			long bitSize = header.getLong();
+			int numHashFunctions = header.getInt();
+			long seed = header.getLong();
+			if (bitSize <= 0 || (bitSize & 63) != 0 || channel.size() < HEADER_SIZE + (bitSize >>> 3)) {
+				throw new IOException("文件长度和记录的位数不符:" + path);
+			}
+			if (numHashFunctions <= 0 || numHashFunctions > 255) {
+				throw new IOException("文件记录的哈希函数个数不正确:" + numHashFunctions);
+			}
+			MappedBitArray bits = new MappedBitArray(channel, HEADER_SIZE, LongBitArray.wordCount(bitSize), readOnly);
+			return new MappedBloomFilter<>(funnel, path.toRealPath(), channel, bits, numHashFunctions, seed);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * 将修改写回磁盘
+	 */
+	public void flush() {
+		mappedBits.force();
+	}
+
+	/**
+	 * 生成快照
+	 * <p>
+	 * 先刷盘再把整个文件复制到临时文件,最后原子替换目标文件,因此目标文件要么是旧快照要么是完整的新快照<br>
+	 * 复制期间不能有其他线程写入,否则快照内容不一致
+	 * </p>
+	 * @param target 快照路径,可以用{@link #open(Path, Funnel)}打开,不能是过滤器自身的文件
+	 * @throws IOException 文件读写失败
+	 */
+	public void snapshot(Path target) throws IOException {
+		//替换自身文件会让当前映射指向已删除的旧文件,之后的修改全部丢失
+		if (Files.exists(target) && target.toRealPath().equals(realPath)) {
+			throw new IllegalArgumentException("快照路径不能是过滤器自身的文件:" + target);
+		}
+		flush();
+		Path dir = target.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				long size = channel.size();
+				long position = 0;
+				while (position < size) {
+					position += channel.transferTo(position, size - position, out);
+				}
+				out.force(true);
+			}
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * 刷盘并关闭文件
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+
+	public static void main(String[] args) {
+		try {
+			benchmark();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void benchmark() throws IOException {
+		int n = 10_000_000;
+		Path path = Files.createTempFile("bloom", ".bf");
+		Path backup = Files.createTempFile("bloom", ".bak");
+		try {
+			long start = System.nanoTime();
+			try (MappedBloomFilter<Long> filter = create(path, Funnel.LONG, n, 0.001)) {
+				for (long i = 0; i < n; i++) {
+					filter.put(i);
+				}
+				filter.snapshot(backup);
+			}
+			System.out.printf("创建并放入%d个键: %d ms, 文件大小 %d MB%n",
+					n, (System.nanoTime() - start) / 1_000_000, Files.size(path) >> 20);
+
+			start = System.nanoTime();
+			try (MappedBloomFilter<Long> filter = open(backup, Funnel.LONG)) {
+				long openMs = (System.nanoTime() - start) / 1_000_000;
+				int missing = 0;
+				for (long i = 0; i < n; i += 1000) {
+					if (!filter.mightContain(i)) {
+						missing++;
+					}
+				}
+				System.out.printf("打开快照: %d ms, 抽查丢失 %d 个, 误判率 %.5f%n", openMs, missing, filter.expectedFpp());
+			}
+		} finally {
+			Files.deleteIfExists(path);
+			Files.deleteIfExists(backup);
+		}
+	}
+}
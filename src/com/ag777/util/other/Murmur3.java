@@ -0,0 +1,127 @@
+package com.ag777.util.other;
+
+/**
+ * MurmurHash3(x64_128)哈希算法
+ * <p>
+ * 一次计算得到两个64位哈希值,供布隆过滤器做双重哈希(h1 + i * h2)使用<br>
+ * 参考:https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ */
+final class Murmur3 {
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private Murmur3() {}
+
+	/**
+	 * 计算128位哈希
+	 * @param data 数据
+	 * @param seed 种子
+	 * @return {h1, h2}
+	 */
+	static long[] hash128(byte[] data, long seed) {
+		return hash128(data, 0, data.length, seed);
+	}
+
+	/**
+	 * 计算128位哈希
+	 * @param data 数据
+	 * @param offset 起始位置
+	 * @param len 长度
+	 * @param seed 种子
+	 * @return {h1, h2}
+	 */
+	static long[] hash128(byte[] data, int offset, int len, long seed) {
+		long h1 = seed;
+		long h2 = seed;
+		int blocks = len >>> 4;
+		//主体,每16字节一组
+		for (int i = 0; i < blocks; i++) {
+			int p = offset + (i << 4);
+			long k1 = getLongLE(data, p);
+			long k2 = getLongLE(data, p + 8);
+
+			h1 ^= mixK1(k1);
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			h2 ^= mixK2(k2);
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+		//尾部不足16字节的部分
+		int tail = offset + (blocks << 4);
+		long k1 = 0;
+		long k2 = 0;
+		switch (len & 15) {
+			case 15: k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+			case 14: k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+			case 13: k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+			case 12: k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+			case 11: k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+			case 10: k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+			case 9: k2 ^= (long) (data[tail + 8] & 0xff);
+				h2 ^= mixK2(k2);
+			case 8: k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+			case 7: k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+			case 6: k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+			case 5: k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+			case 4: k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+			case 3: k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+			case 2: k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+			case 1: k1 ^= (long) (data[tail] & 0xff);
+				h1 ^= mixK1(k1);
+			default:
+		}
+		//收尾
+		h1 ^= len;
+		h2 ^= len;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+		return new long[] {h1, h2};
+	}
+
+	private static long getLongLE(byte[] data, int p) {
+		return (data[p] & 0xffL)
+				| (data[p + 1] & 0xffL) << 8
+				| (data[p + 2] & 0xffL) << 16
+				| (data[p + 3] & 0xffL) << 24
+				| (data[p + 4] & 0xffL) << 32
+				| (data[p + 5] & 0xffL) << 40
+				| (data[p + 6] & 0xffL) << 48
+				| (data[p + 7] & 0xffL) << 56;
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		return k1;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		return k2;
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb93fe53e9a63L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
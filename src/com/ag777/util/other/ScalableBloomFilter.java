@@ -0,0 +1,193 @@
+package com.ag777.util.other;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可扩容布隆过滤器(Scalable Bloom Filter)
+ * <p>
+ * 不需要预先知道数据量:当前分片放满后追加一个容量更大、误判率更低的新分片,
+ * 第i个分片容量为initialCapacity*growth^i,误判率为fpp*(1-ratio)*ratio^i,
+ * 总误判率始终不超过fpp<br>
+ * 参考:Almeida et al., Scalable Bloom Filters, 2007<br>
+ * 第i个分片的哈希种子为seed+i*SEED_STRIDE,各分片的位下标互相独立,总误判率的估算才成立;键只转一次字节数组,每个分片各自计算哈希<br>
+ * 非线程安全
+ * </p>
+ *
+ * @author ag777
+ * @version create on 2026年10月18日,last modify at 2026年10月18日
+ * @param <T> 键类型
+ */
+public class ScalableBloomFilter<T> {
+
+	/* 默认分片容量增长倍数 */
+	private static final int DEFAULT_GROWTH = 2;
+	/* 默认误判率收紧比例 */
+	private static final double DEFAULT_TIGHTENING_RATIO = 0.85;
+	/* 分片种子的步长(黄金分割数),不直接用seed+i:Murmur3在种子等于数据长度时(如Funnel.LONG的8)两个哈希值退化为倍数关系 */
+	private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+	private final Funnel<? super T> funnel;
+	private final double fpp;
+	private final int growth;
+	private final double ratio;
+	private final long seed;
+	private final List<BloomFilter<T>> slices = new ArrayList<>();
+	private final List<Long> capacities = new ArrayList<>();
+	private long currentCount;
+	private long count;
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param initialCapacity 第一个分片的容量
+	 * @param fpp 总误判率上限,(0,1)
+	 */
+	public ScalableBloomFilter(Funnel<? super T> funnel, long initialCapacity, double fpp) {
+		this(funnel, initialCapacity, fpp, DEFAULT_GROWTH, DEFAULT_TIGHTENING_RATIO);
+	}
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param initialCapacity 第一个分片的容量
+	 * @param fpp 总误判率上限,(0,1)
+	 * @param growth 分片容量增长倍数,不小于1
+	 * @param ratio 误判率收紧比例,(0,1)
+	 */
+	public ScalableBloomFilter(Funnel<? super T> funnel, long initialCapacity, double fpp, int growth, double ratio) {
+		this(funnel, initialCapacity, fpp, growth, ratio, 0);
+	}
+
+	/**
+	 * @param funnel 键转字节数组的方式
+	 * @param initialCapacity 第一个分片的容量
+	 * @param fpp 总误判率上限,(0,1)
+	 * @param growth 分片容量增长倍数,不小于1
+	 * @param ratio 误判率收紧比例,(0,1)
+	 * @param seed 哈希种子,第i个分片使用seed+i*SEED_STRIDE
+	 */
+	public ScalableBloomFilter(Funnel<? super T> funnel, long initialCapacity, double fpp, int growth, double ratio, long seed) {
+		if (funnel == null) {
+			throw new IllegalArgumentException("funnel不能为空");
+		}
+		if (initialCapacity <= 0) {
+			throw new IllegalArgumentException("初始容量必须大于0:" + initialCapacity);
+		}
+		if (!(fpp > 0 && fpp < 1)) {
+			throw new IllegalArgumentException("误判率必须在(0,1)之间:" + fpp);
+		}
+		if (growth < 1) {
+			throw new IllegalArgumentException("增长倍数不能小于1:" + growth);
+		}
+		if (!(ratio > 0 && ratio < 1)) {
+			throw new IllegalArgumentException("收紧比例必须在(0,1)之间:" + ratio);
+		}
+		this.funnel = funnel;
+		this.fpp = fpp;
+		this.growth = growth;
+		this.ratio = ratio;
+		this.seed = seed;
+		addSlice(initialCapacity, fpp * (1 - ratio));
+	}
+
+	/**
+	 * 放入键,当前分片放满时自动追加新分片
+	 * @param value 键
+	 * @return 键之前是否不存在(本次是否放入)
+	 */
+	public boolean put(T value) {
+		byte[] bytes = funnel.funnel(value);
+		if (mightContain(bytes)) {
+			return false;
+		}
+		int last = slices.size() - 1;
+		BloomFilter<T> slice = slices.get(last);
+		slice.put(Murmur3.hash128(bytes, slice.seed));
+		count++;
+		if (++currentCount >= capacities.get(last)) {
+			double sliceFpp = fpp * (1 - ratio) * Math.pow(ratio, slices.size());
+			//误判率过小时位数组会超出上限,此时保持最小误判率继续扩容
+			addSlice(capacities.get(last) * growth, Math.max(sliceFpp, Double.MIN_NORMAL));
+		}
+		return true;
+	}
+
+	/**
+	 * 判断键是否可能存在,返回false则一定不存在
+	 * @param value 键
+	 * @return 是否可能存在
+	 */
+	public boolean mightContain(T value) {
+		return mightContain(funnel.funnel(value));
+	}
+
+	/**
+	 * @return 成功放入的键个数(不含判断为已存在而未放入的)
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return 分片个数
+	 */
+	public int sliceCount() {
+		return slices.size();
+	}
+
+	/**
+	 * @return 所有分片的总位数
+	 */
+	public long bitSize() {
+		long bits = 0;
+		for (BloomFilter<T> slice : slices) {
+			bits += slice.bitSize();
+		}
+		return bits;
+	}
+
+	/**
+	 * 根据各分片填充率估算总误判率
+	 * @return 误判率
+	 */
+	public double expectedFpp() {
+		double notFalsePositive = 1;
+		for (BloomFilter<T> slice : slices) {
+			notFalsePositive *= 1 - slice.expectedFpp();
+		}
+		return 1 - notFalsePositive;
+	}
+
+	private boolean mightContain(byte[] bytes) {
+		//新分片更大且更可能命中最近的数据,倒序查找
+		for (int i = slices.size() - 1; i >= 0; i--) {
+			BloomFilter<T> slice = slices.get(i);
+			if (slice.mightContain(Murmur3.hash128(bytes, slice.seed))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addSlice(long capacity, double sliceFpp) {
+		slices.add(new BloomFilter<T>(funnel, capacity, sliceFpp, seed + slices.size() * SEED_STRIDE));
+		capacities.add(capacity);
+		currentCount = 0;
+	}
+
+
+	public static void main(String[] args) {
+		ScalableBloomFilter<Long> filter = new ScalableBloomFilter<>(Funnel.LONG, 1000, 0.01);
+		int n = 2_000_000;
+		for (long i = 0; i < n; i++) {
+			filter.put(i);
+		}
+		int falsePositive = 0;
+		for (long i = n; i < 2L * n; i++) {
+			if (filter.mightContain(i)) {
+				falsePositive++;
+			}
+		}
+		System.out.printf("放入%d个, 分片%d个, 总位数%d, 实测误判率 %.5f, 估算误判率 %.5f%n",
+				filter.count(), filter.sliceCount(), filter.bitSize(), (double) falsePositive / n, filter.expectedFpp());
+	}
+}